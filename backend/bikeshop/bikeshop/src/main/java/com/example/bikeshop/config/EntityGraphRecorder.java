@@ -0,0 +1,35 @@
+package com.example.bikeshop.config;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+import org.springframework.stereotype.Component;
+
+// Gắn vào mọi repository một interceptor: gọi method có @EntityGraph thì báo graph đó cho FetchPlanGuard,
+// để các association trong graph được tính là fetch plan của request đang chạy
+@Component
+public class EntityGraphRecorder implements BeanPostProcessor {
+
+    // Lấy lười: BeanPostProcessor được tạo trước các bean khác, FetchPlanGuard cần EntityManagerFactory
+    @Autowired
+    private ObjectProvider<FetchPlanGuard> fetchPlanGuard;
+
+    @Override
+    public Object postProcessBeforeInitialization(Object bean, String beanName) {
+        if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+            factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                    (proxyFactory, repositoryInformation) -> proxyFactory.addAdvice((MethodInterceptor) invocation -> {
+                        EntityGraph entityGraph = AnnotatedElementUtils.findMergedAnnotation(invocation.getMethod(), EntityGraph.class);
+                        if (entityGraph != null) {
+                            fetchPlanGuard.getObject().declareEntityGraph(repositoryInformation.getDomainType(), entityGraph);
+                        }
+                        return invocation.proceed();
+                    })));
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.bikeshop.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.AttributeNode;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Subgraph;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.Metamodel;
+import jakarta.persistence.metamodel.PluralAttribute;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.InitializeCollectionEvent;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.LoadEvent;
+import org.hibernate.event.spi.LoadEventListener;
+import org.hibernate.graph.RootGraph;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Theo dõi lazy loading trong mỗi request. Association cần dùng phải nằm trong entity graph
+// của một repository đã gọi trong request (order-summary, order-full, review-list, cart-view...,
+// ghi lại bởi EntityGraphRecorder) hoặc khai báo nạp theo lô bằng @BatchSize; nếu Hibernate phải
+// nạp một proxy/collection khác lúc đang xử lý request thì đó là dấu hiệu N+1.
+// default_batch_fetch_size áp cho mọi association nên không tính là fetch plan.
+// fetch-guard.mode: off (mặc định) | log (in cảnh báo) | strict (ném lỗi, dùng khi dev/test)
+@Component
+public class FetchPlanGuard extends OncePerRequestFilter {
+    private static final ThreadLocal<RequestPlan> CURRENT_REQUEST = new ThreadLocal<>();
+
+    // Association khai báo trong một entity graph: role ("...Order.items") và entity đích ("...User")
+    private record DeclaredPlan(Set<String> roles, Set<String> entities) {
+    }
+
+    // Fetch plan của request đang chạy: gộp các entity graph repository đã dùng
+    private record RequestPlan(String request, Set<String> roles, Set<String> entities) {
+    }
+
+    private final Map<String, DeclaredPlan> declaredPlans = new ConcurrentHashMap<>();
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Value("${fetch-guard.mode:off}")
+    private String mode;
+
+    @PostConstruct
+    public void registerListeners() {
+        if (isOff()) {
+            return;
+        }
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.LOAD, (LoadEventListener) this::onLoad);
+        registry.appendListeners(EventType.INIT_COLLECTION, (InitializeCollectionEventListener) this::onInitializeCollection);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (isOff()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        CURRENT_REQUEST.set(new RequestPlan(request.getMethod() + " " + request.getRequestURI(),
+                new HashSet<>(), new HashSet<>()));
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            CURRENT_REQUEST.remove();
+        }
+    }
+
+    // Repository có @EntityGraph vừa được gọi trong request: association của graph thuộc fetch plan
+    public void declareEntityGraph(Class<?> domainType, EntityGraph entityGraph) {
+        RequestPlan plan = CURRENT_REQUEST.get();
+        if (plan == null) {
+            return;
+        }
+        String key = domainType.getName() + ":" + entityGraph.value() + ":" + String.join(",", entityGraph.attributePaths());
+        DeclaredPlan declared = declaredPlans.computeIfAbsent(key, k -> resolve(domainType, entityGraph));
+        plan.roles().addAll(declared.roles());
+        plan.entities().addAll(declared.entities());
+    }
+
+    private DeclaredPlan resolve(Class<?> domainType, EntityGraph entityGraph) {
+        SessionFactoryImplementor factory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        Metamodel metamodel = entityManagerFactory.getMetamodel();
+        DeclaredPlan declared = new DeclaredPlan(new HashSet<>(), new HashSet<>());
+        RootGraph<?> graph = entityGraph.value().isEmpty() ? null : factory.findEntityGraphByName(entityGraph.value());
+        if (graph != null) {
+            declareNodes(metamodel, graph.getGraphedType().getJavaType(), graph.getAttributeNodes(), declared);
+        }
+        for (String path : entityGraph.attributePaths()) {
+            Class<?> type = domainType;
+            for (String attributeName : path.split("\\.")) {
+                type = declare(metamodel, type, attributeName, declared);
+            }
+        }
+        return declared;
+    }
+
+    private void declareNodes(Metamodel metamodel, Class<?> type, List<AttributeNode<?>> nodes, DeclaredPlan declared) {
+        for (AttributeNode<?> node : nodes) {
+            declare(metamodel, type, node.getAttributeName(), declared);
+            for (Subgraph<?> subgraph : node.getSubgraphs().values()) {
+                declareNodes(metamodel, subgraph.getClassType(), subgraph.getAttributeNodes(), declared);
+            }
+        }
+    }
+
+    // Ghi association vào plan, trả về kiểu đích (kiểu phần tử nếu là collection)
+    private Class<?> declare(Metamodel metamodel, Class<?> type, String attributeName, DeclaredPlan declared) {
+        Attribute<?, ?> attribute = metamodel.managedType(type).getAttribute(attributeName);
+        Class<?> target = attribute instanceof PluralAttribute<?, ?, ?> plural
+                ? plural.getElementType().getJavaType()
+                : attribute.getJavaType();
+        declared.roles().add(type.getName() + "." + attributeName);
+        declared.entities().add(target.getName());
+        return target;
+    }
+
+    // IMMEDIATE_LOAD là lúc một proxy lazy (@ManyToOne) được khởi tạo. Event không cho biết proxy thuộc association
+    // nào, nên proxy được coi là trong plan khi entity của nó là đích của một association trong graph đã dùng
+    private void onLoad(LoadEvent event, LoadEventListener.LoadType loadType) {
+        if (loadType != LoadEventListener.IMMEDIATE_LOAD) {
+            return;
+        }
+        RequestPlan plan = CURRENT_REQUEST.get();
+        if (plan == null || plan.entities().contains(event.getEntityClassName())) {
+            return;
+        }
+        EntityPersister persister = event.getSession().getFactory().getMappingMetamodel()
+                .findEntityDescriptor(event.getEntityClassName());
+        // @BatchSize trên entity là fetch plan có chủ đích cho proxy của nó
+        if (persister == null || !persister.getMappedClass().isAnnotationPresent(BatchSize.class)) {
+            report(plan, event.getEntityClassName() + "#" + event.getEntityId());
+        }
+    }
+
+    private void onInitializeCollection(InitializeCollectionEvent event) {
+        String role = event.getCollection().getRole();
+        RequestPlan plan = CURRENT_REQUEST.get();
+        if (plan == null || plan.roles().contains(role)) {
+            return;
+        }
+        CollectionPersister persister = event.getSession().getFactory().getMappingMetamodel()
+                .findCollectionDescriptor(role);
+        // @BatchSize trên collection (ví dụ items của /api/orders/cursor) là fetch plan có chủ đích
+        Field field = persister == null ? null : ReflectionUtils.findField(
+                persister.getOwnerEntityPersister().getMappedClass(), role.substring(role.lastIndexOf('.') + 1));
+        if (field == null || !field.isAnnotationPresent(BatchSize.class)) {
+            report(plan, role);
+        }
+    }
+
+    private void report(RequestPlan plan, String association) {
+        String message = "Lazy load ngoài fetch plan: " + association + " trong " + plan.request();
+        if ("strict".equalsIgnoreCase(mode)) {
+            throw new IllegalStateException(message);
+        }
+        System.out.println(message);
+    }
+
+    private boolean isOff() {
+        return !"log".equalsIgnoreCase(mode) && !"strict".equalsIgnoreCase(mode);
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.bikeshop.config;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+// Các thay đổi schema mà ddl-auto=update không tự làm được (chỉ chạy với MySQL).
+// Chạy sau entityManagerFactory để các bảng đã được Hibernate tạo/cập nhật, kể cả với CSDL mới tinh
+@Component
+@DependsOn("entityManagerFactory")
+public class SchemaMigrations {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private volatile boolean fulltextAvailable = false;
+
+    @PostConstruct
+    public void migrate() {
+        if (!isMySql()) {
+            return;
+        }
+        ensureUserProductUniqueKey("cart_item", "uk_cart_item_user_product");
+        ensureUserProductUniqueKey("wishlist", "uk_wishlist_user_product");
+        ensureCreatedAtNotNull("orders");
+        ensureCreatedAtNotNull("shop_reviews");
+        ensureCreatedAtNotNull("product_reviews");
+        fulltextAvailable = ensureFulltextIndex("shop_reviews", "ft_shop_reviews_comment", "comment")
+                & ensureFulltextIndex("product_reviews", "ft_product_reviews_comment_answer", "comment, answer");
+    }
+
+    // true khi các index FULLTEXT cho tìm kiếm đánh giá đã sẵn sàng (MATCH ... AGAINST dùng được)
+    public boolean isFulltextAvailable() {
+        return fulltextAvailable;
+    }
+
+    // Parser ngram tách chữ thành từng cụm ký tự, nên tìm được cả tiếng Việt và chuỗi con giống LIKE '%kw%'.
+    // Index dựng với stopword tắt: mặc định InnoDB bỏ mọi cụm ngram chứa stopword ("a", "i", "an", "in"...),
+    // khiến các cụm như "an toàn" không tìm được
+    private boolean ensureFulltextIndex(String table, String indexName, String columns) {
+        if (indexExists(table, indexName)) {
+            return true;
+        }
+        try {
+            // Biến session nên phải đặt trên cùng connection với câu ALTER
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("SET SESSION innodb_ft_enable_stopword = OFF");
+                    try {
+                        statement.execute("ALTER TABLE " + table + " ADD FULLTEXT INDEX " + indexName +
+                                " (" + columns + ") WITH PARSER ngram");
+                    } finally {
+                        statement.execute("SET SESSION innodb_ft_enable_stopword = DEFAULT");
+                    }
+                }
+                return null;
+            });
+            System.out.println("Đã thêm index " + indexName);
+            return true;
+        } catch (Exception e) {
+            System.err.println("Không tạo được index " + indexName + ", tìm kiếm dùng LIKE: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Bảng đã có dòng trùng (user_id, product_id) thì Hibernate không tạo được khóa duy nhất:
+    // xóa bớt dòng trùng, giữ dòng mới nhất, rồi mới thêm khóa
+    private void ensureUserProductUniqueKey(String table, String keyName) {
+        if (!tableExists(table)) {
+            System.err.println("Chưa có bảng " + table + ", bỏ qua khóa " + keyName);
+            return;
+        }
+        if (indexExists(table, keyName)) {
+            return;
+        }
+        int removed = jdbcTemplate.update("DELETE t1 FROM " + table + " t1 JOIN " + table + " t2 " +
+                "ON t1.user_id = t2.user_id AND t1.product_id = t2.product_id AND t1.id < t2.id");
+        jdbcTemplate.execute("ALTER TABLE " + table + " ADD CONSTRAINT " + keyName + " UNIQUE (user_id, product_id)");
+        System.out.println("Đã thêm khóa " + keyName + " (xóa " + removed + " dòng trùng)");
+    }
+
+    // Phân trang keyset theo (created_at, id) không với tới dòng có created_at NULL, và cursor của dòng đó không giải mã được.
+    // ddl-auto=update không đổi được cột sang NOT NULL: điền các dòng NULL bằng mốc sớm nhất của bảng
+    // (MySQL xếp NULL cuối cùng khi DESC, nên thứ tự hiển thị không đổi) rồi mới thêm ràng buộc
+    private void ensureCreatedAtNotNull(String table) {
+        List<Map<String, Object>> columns = jdbcTemplate.queryForList(
+                "SELECT is_nullable, column_type FROM information_schema.columns " +
+                        "WHERE table_schema = DATABASE() AND table_name = ? AND column_name = 'created_at'",
+                table);
+        if (columns.isEmpty() || "NO".equals(columns.get(0).get("is_nullable"))) {
+            return;
+        }
+        LocalDateTime earliest = jdbcTemplate.queryForObject(
+                "SELECT MIN(created_at) FROM " + table, LocalDateTime.class);
+        int filled = jdbcTemplate.update("UPDATE " + table + " SET created_at = ? WHERE created_at IS NULL",
+                earliest != null ? earliest : LocalDateTime.now());
+        jdbcTemplate.execute("ALTER TABLE " + table + " MODIFY created_at " + columns.get(0).get("column_type") + " NOT NULL");
+        System.out.println("Đã đặt " + table + ".created_at NOT NULL (điền " + filled + " dòng)");
+    }
+
+    private boolean tableExists(String table) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.tables WHERE table_schema = DATABASE() AND table_name = ?",
+                Integer.class, table);
+        return count != null && count > 0;
+    }
+
+    private boolean indexExists(String table, String indexName) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.statistics " +
+                        "WHERE table_schema = DATABASE() AND table_name = ? AND index_name = ?",
+                Integer.class, table, indexName);
+        return count != null && count > 0;
+    }
+
+    private boolean isMySql() {
+        try {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            return product != null && product.toLowerCase().contains("mysql");
+        } catch (Exception e) {
+            System.err.println("Không xác định được loại CSDL: " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -16,6 +16,7 @@ public class WebConfig {
                         .allowedOrigins("http://localhost:3000")
                         .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                         .allowedHeaders("*") // Allow all headers
+                        .exposedHeaders("X-Answered-Count", "X-Unanswered-Count")
                         .allowCredentials(true)
                         .maxAge(3600); // Cache preflight requests for 1 hour
             }
@@ -1,8 +1,11 @@
 package com.example.bikeshop.controller;
 
 import com.example.bikeshop.dto.AdminDashboardResponse;
+import com.example.bikeshop.dto.RevenueByTimeResponse;
 import com.example.bikeshop.service.AdminDashboardService;
+import com.example.bikeshop.service.RevenueSeriesService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -10,12 +13,18 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.LocalDate;
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/admin/dashboard")
 public class AdminDashboardController {
     @Autowired
     private AdminDashboardService dashboardService;
 
+    @Autowired
+    private RevenueSeriesService revenueSeriesService;
+
     @GetMapping
     public ResponseEntity<AdminDashboardResponse> getDashboard() {
         return ResponseEntity.ok(dashboardService.getDashboardData());
@@ -35,4 +44,19 @@ public class AdminDashboardController {
     public ResponseEntity<Double> getRevenueByYear(@RequestParam int year) {
         return ResponseEntity.ok(dashboardService.getRevenueByYear(year));
     }
+
+    // Cả biểu đồ trong một lần gọi: /revenue/series?from=2025-01-01&to=2025-12-31&granularity=month
+    @GetMapping("/revenue/series")
+    public ResponseEntity<?> getRevenueSeries(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "day") String granularity) {
+        try {
+            List<RevenueByTimeResponse> series = revenueSeriesService.getSeries(
+                    from, to, RevenueSeriesService.Granularity.parse(granularity));
+            return ResponseEntity.ok(series);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,44 @@
+package com.example.bikeshop.controller;
+
+import com.example.bikeshop.service.BlobStore;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+
+// Phục vụ ảnh gốc khi storage.type là local hoặc memory (với Cloudinary, URL ảnh trỏ thẳng tới Cloudinary)
+@RestController
+@RequestMapping("/api/blobs")
+@ConditionalOnExpression("'${storage.type:cloudinary}' != 'cloudinary'")
+public class BlobController {
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @GetMapping("/{id}")
+    public void get(@PathVariable String id, HttpServletResponse response) throws IOException {
+        InputStream in;
+        try {
+            in = blobStore.open(id);
+        } catch (FileNotFoundException | NoSuchFileException e) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        try (in) {
+            // id ngẫu nhiên, không bao giờ dùng lại cho nội dung khác
+            response.setHeader("Cache-Control", "public, max-age=31536000, immutable");
+            response.setContentType(MediaTypeFactory.getMediaType(id).orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+            in.transferTo(response.getOutputStream());
+        }
+    }
+}
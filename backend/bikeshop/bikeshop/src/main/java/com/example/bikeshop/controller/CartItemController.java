@@ -3,7 +3,7 @@ package com.example.bikeshop.controller;
 import com.example.bikeshop.dto.CartItemRequestDTO;
 import com.example.bikeshop.dto.CartItemResponseDTO;
 import com.example.bikeshop.dto.CartResponseDTO;
-import com.example.bikeshop.entity.CartItem;
+import com.example.bikeshop.dto.CartSyncResponseDTO;
 import com.example.bikeshop.service.CartService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -53,7 +53,7 @@ public class CartItemController {
 
     // Endpoint đồng bộ giỏ hàng
     @PostMapping("/sync/{userId}")
-    public void syncCart(@PathVariable Long userId, @RequestBody List<CartItem> items) {
-        cartService.syncCart(userId, items);
+    public ResponseEntity<CartSyncResponseDTO> syncCart(@PathVariable Long userId, @RequestBody List<CartItemRequestDTO> items) {
+        return ResponseEntity.ok(cartService.syncCart(userId, items));
     }
 }
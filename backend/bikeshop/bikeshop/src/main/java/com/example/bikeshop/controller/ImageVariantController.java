@@ -0,0 +1,83 @@
+package com.example.bikeshop.controller;
+
+import com.example.bikeshop.service.ImageDerivativeService;
+import com.example.bikeshop.service.ImageDerivativeService.Variant;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+@RestController
+@RequestMapping("/api/images/variants")
+public class ImageVariantController {
+    // Nội dung của một key + variant không bao giờ đổi (key là hash của URL gốc bất biến)
+    private static final String CACHE_FOREVER = "public, max-age=31536000, immutable";
+
+    @Autowired
+    private ImageDerivativeService derivativeService;
+
+    @GetMapping("/{key}/{variant}")
+    public void serve(@PathVariable String key, @PathVariable String variant,
+                      HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Variant parsed = Variant.parse(variant);
+        if (parsed == null || !ImageDerivativeService.isValidKey(key)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        Path file = derivativeService.find(key, parsed);
+        if (file == null) {
+            // Chưa tạo xong: chuyển tạm về ảnh gốc (không cache), lần sau sẽ có variant
+            String original = derivativeService.sourceOf(key);
+            if (original == null) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            response.setHeader("Cache-Control", "no-store");
+            response.sendRedirect(original);
+            return;
+        }
+
+        long size = Files.size(file);
+        String etag = "\"" + key.substring(0, 16) + "-" + parsed.path() + "-" + size + "\"";
+        response.setHeader("ETag", etag);
+        response.setHeader("Cache-Control", CACHE_FOREVER);
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setContentType("image/jpeg");
+        response.setContentLengthLong(size);
+        if (Boolean.TRUE.equals(request.getAttribute("org.apache.tomcat.sendfile.support"))) {
+            // Tomcat tự gửi file bằng FileChannel.transferTo (sendfile) sau khi servlet trả về, không qua bộ đệm Java
+            request.setAttribute("org.apache.tomcat.sendfile.filename", file.toAbsolutePath().toString());
+            request.setAttribute("org.apache.tomcat.sendfile.start", 0L);
+            request.setAttribute("org.apache.tomcat.sendfile.end", size);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < size) {
+                long sent = channel.transferTo(position, size - position, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+            }
+        }
+    }
+}
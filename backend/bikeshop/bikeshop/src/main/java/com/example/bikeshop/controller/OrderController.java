@@ -1,10 +1,14 @@
 package com.example.bikeshop.controller;
 
 import com.example.bikeshop.dto.CreateOrderRequest;
+import com.example.bikeshop.dto.CursorPage;
+import com.example.bikeshop.dto.OrderSummary;
 import com.example.bikeshop.entity.Order;
 import com.example.bikeshop.entity.OrderStatus;
 import com.example.bikeshop.entity.User;
+import com.example.bikeshop.exception.InsufficientStockException;
 import com.example.bikeshop.repository.UserRepository;
+import com.example.bikeshop.service.IdempotencyService;
 import com.example.bikeshop.service.OrderService;
 import jakarta.annotation.PostConstruct;
 import jakarta.servlet.http.HttpSession;
@@ -34,17 +38,28 @@ public class OrderController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private IdempotencyService idempotencyService;
+
     @GetMapping
-    public ResponseEntity<Page<Order>> getAllOrders(
+    public ResponseEntity<Page<OrderSummary>> getAllOrders(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sortBy,
             @RequestParam(defaultValue = "desc") String sortDir
     ) {
-        Page<Order> orders = orderService.getAllOrdersPaginated(page, size, sortBy, sortDir);
+        Page<OrderSummary> orders = orderService.getAllOrdersPaginated(page, size, sortBy, sortDir);
         return ResponseEntity.ok(orders);
     }
 
+    @GetMapping("/cursor")
+    public ResponseEntity<CursorPage<Order>> getOrdersAfter(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "10") int size
+    ) {
+        return ResponseEntity.ok(orderService.getOrdersAfter(after, size));
+    }
+
     @GetMapping("/{orderId}")
     public ResponseEntity<?> getOrderById(@PathVariable Long orderId) {
         try {
@@ -67,17 +82,30 @@ public class OrderController {
     }
 
     @PostMapping
-    public ResponseEntity<?> createOrder(@RequestBody CreateOrderRequest request, HttpSession session) {
+    public ResponseEntity<?> createOrder(@RequestBody CreateOrderRequest request,
+                                         @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                         HttpSession session) {
         Long userId = (Long) session.getAttribute("userId");
         if (userId == null) {
             return ResponseEntity.status(401).body("Bạn cần đăng nhập để đặt hàng.");
         }
 
+        try {
+            // Gửi lại với cùng Idempotency-Key thì nhận lại đơn đã tạo, không đặt hàng lần nữa;
+            // cùng khóa mà nội dung khác thì 422
+            Order order = idempotencyKey == null
+                    ? placeOrder(request, userId)
+                    : idempotencyService.execute(userId, idempotencyKey, request, () -> placeOrder(request, userId));
+            return ResponseEntity.ok(order);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    private Order placeOrder(CreateOrderRequest request, Long userId) {
         User user = userRepository.findById(userId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy người dùng"));
-
-        Order order = orderService.createOrder(request, user);
-        return ResponseEntity.ok(order);
+        return orderService.createOrder(request, user);
     }
 
     @DeleteMapping("/{orderId}")
@@ -98,6 +126,8 @@ public class OrderController {
         try {
             Order updatedOrder = orderService.updateOrder(orderId, request);
             return ResponseEntity.ok(updatedOrder);
+        } catch (InsufficientStockException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(e.getMessage());
         }
@@ -121,9 +151,11 @@ public class OrderController {
     }
 
     @GetMapping("/search")
-    public ResponseEntity<List<Order>> searchOrders(
+    public ResponseEntity<Page<OrderSummary>> searchOrders(
             @RequestParam(required = false) String keyword,
-            @RequestParam(required = false) String status) {
+            @RequestParam(required = false) String status,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size) {
 
         OrderStatus orderStatus = null;
         if (status != null && !status.isEmpty()) {
@@ -134,7 +166,8 @@ public class OrderController {
             }
         }
 
-        List<Order> orders = orderService.searchOrders(keyword, String.valueOf(orderStatus));
+        Page<OrderSummary> orders = orderService.searchOrders(
+                keyword, orderStatus != null ? orderStatus.name() : null, page, size);
         return ResponseEntity.ok(orders);
     }
 }
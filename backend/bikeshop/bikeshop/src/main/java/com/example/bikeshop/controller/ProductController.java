@@ -1,12 +1,12 @@
 package com.example.bikeshop.controller;
 
+import com.example.bikeshop.dto.CursorPage;
 import com.example.bikeshop.dto.ProductDTO;
-import com.example.bikeshop.entity.Image;
+import com.example.bikeshop.dto.ProductFacetsDTO;
 import com.example.bikeshop.entity.Product;
 import com.example.bikeshop.entity.User;
 import com.example.bikeshop.repository.UserRepository;
-import com.example.bikeshop.service.CloudinaryService;
-import com.example.bikeshop.service.ImageService;
+import com.example.bikeshop.service.ImageUploadService;
 import com.example.bikeshop.service.ProductService;
 import com.example.bikeshop.specification.ProductSpecification;
 import jakarta.servlet.http.HttpSession;
@@ -22,10 +22,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Map;
@@ -41,10 +38,7 @@ public class ProductController {
     private UserRepository userRepository;
 
     @Autowired
-    CloudinaryService cloudinaryService;
-
-    @Autowired
-    ImageService imageService;
+    ImageUploadService imageUploadService;
 
     @GetMapping
     public ResponseEntity<Page<Product>> getAllProduct(
@@ -54,6 +48,13 @@ public class ProductController {
         return ResponseEntity.ok(productService.getAllProduct(pageable));
     }
 
+    @GetMapping("/cursor")
+    public ResponseEntity<CursorPage<Product>> getProductsAfter(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "9") int size) {
+        return ResponseEntity.ok(productService.getProductsAfter(after, size));
+    }
+
     @GetMapping("/category/{category}")
     public ResponseEntity<Page<Product>> getProductsByCategory(
             @PathVariable String category,
@@ -87,28 +88,8 @@ public class ProductController {
 
         Product savedProductEntity = productService.getProductById(savedProductDTO.getId());
 
-        List<String> uploadedUrls = new ArrayList<>();
-        for (MultipartFile file : images) {
-            BufferedImage bi = ImageIO.read(file.getInputStream());
-            if (bi == null) {
-                return new ResponseEntity<>("File không hợp lệ", HttpStatus.BAD_REQUEST);
-            }
-
-            Map<String, Object> result = cloudinaryService.upload(file);
-
-            Image image = new Image(
-                    (String) result.get("original_filename"),
-                    (String) result.get("url"),
-                    (String) result.get("public_id"));
-            image.setProduct(savedProductEntity);
-            imageService.save(image);
-
-            uploadedUrls.add((String) result.get("url"));
-        }
-
-        savedProductEntity.setImageUrls(uploadedUrls);
-
-        productService.saveEntity(savedProductEntity);
+        // File không phải ảnh hoặc quá lớn: InvalidImageException -> 400
+        List<String> uploadedUrls = imageUploadService.uploadForProduct(savedProductEntity, images);
 
         return ResponseEntity.ok(Map.of(
                 "message", "Tạo sản phẩm thành công",
@@ -155,6 +136,16 @@ public class ProductController {
         return ResponseEntity.ok(productService.filterProducts(category, brand, minPrice, maxPrice, pageable));
     }
 
+    @GetMapping("/facets")
+    public ResponseEntity<ProductFacetsDTO> getFacets(
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String brand,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice) {
+
+        return ResponseEntity.ok(productService.getFacets(category, brand, minPrice, maxPrice));
+    }
+
     @GetMapping("/search")
     public ResponseEntity<Page<Product>> searchProducts(
             @RequestParam("keyword") String keyword,
@@ -1,8 +1,11 @@
 package com.example.bikeshop.controller;
 
 import com.example.bikeshop.dto.AnswerProductRequest;
+import com.example.bikeshop.dto.CursorPage;
+import com.example.bikeshop.dto.ProductQuestionDTO;
 import com.example.bikeshop.dto.ProductReviewRequestDTO;
 import com.example.bikeshop.dto.ProductReviewResponse;
+import com.example.bikeshop.service.ProductQuestionCounters;
 import com.example.bikeshop.service.ProductReviewService;
 import jakarta.servlet.http.HttpSession;
 import lombok.RequiredArgsConstructor;
@@ -30,6 +33,24 @@ public class ProductReviewController {
         return reviewService.getAllReviews(page, size);
     }
 
+    @GetMapping("/cursor")
+    public CursorPage<ProductReviewResponse> getReviewsAfter(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "9") int size
+    ) {
+        return reviewService.getReviewsAfter(after, size);
+    }
+
+    @GetMapping("/search")
+    public Page<ProductReviewResponse> searchReviews(
+            @RequestParam(required = false) Long productId,
+            @RequestParam(required = false) String keyword,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size
+    ) {
+        return reviewService.searchReviews(productId, keyword, page, size);
+    }
+
     @PostMapping
     public ResponseEntity<?> addReview(@RequestBody ProductReviewRequestDTO request, HttpSession session) {
         Long userId = (Long) session.getAttribute("userId");
@@ -45,6 +66,20 @@ public class ProductReviewController {
         return ResponseEntity.ok(reviewService.getReviewsByProduct(productId));
     }
 
+    // Hỏi đáp theo trang: /product/{id}/cursor?after=...&size=9, kèm số câu đã/chưa trả lời trong header
+    @GetMapping("/product/{productId}/cursor")
+    public ResponseEntity<CursorPage<ProductQuestionDTO>> getQuestionsAfter(
+            @PathVariable Long productId,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "9") int size
+    ) {
+        ProductQuestionCounters.Counts counts = reviewService.getQuestionCounts(productId);
+        return ResponseEntity.ok()
+                .header("X-Answered-Count", String.valueOf(counts.answered()))
+                .header("X-Unanswered-Count", String.valueOf(counts.unanswered()))
+                .body(reviewService.getQuestionsAfter(productId, after, size));
+    }
+
     @DeleteMapping("/{reviewId}")
     public ResponseEntity<?> deleteReview(@PathVariable Long reviewId, HttpSession session) {
         Long userId = (Long) session.getAttribute("userId");
@@ -1,5 +1,6 @@
 package com.example.bikeshop.controller;
 
+import com.example.bikeshop.dto.CursorPage;
 import com.example.bikeshop.dto.ShopReviewRequest;
 import com.example.bikeshop.dto.ShopReviewResponse;
 import com.example.bikeshop.dto.ShopReviewStatsDTO;
@@ -66,6 +67,14 @@ public class ShopReviewController {
         return reviewService.getAllReviews(page, size);
     }
 
+    @GetMapping("/cursor")
+    public CursorPage<ShopReviewResponse> getReviewsAfter(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "5") int size
+    ) {
+        return reviewService.getReviewsAfter(after, size);
+    }
+
     @PutMapping("/{id}")
     public ResponseEntity<?> updateReview(@PathVariable Long id, @RequestBody ShopReviewRequest req, HttpSession session) {
         Long userId = (Long) session.getAttribute("userId");
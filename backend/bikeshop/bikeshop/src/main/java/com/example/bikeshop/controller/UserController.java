@@ -1,5 +1,6 @@
 package com.example.bikeshop.controller;
 
+import com.example.bikeshop.dto.CursorPage;
 import com.example.bikeshop.dto.UserDTO;
 import com.example.bikeshop.dto.UserOrderStatsDTO;
 import com.example.bikeshop.entity.User;
@@ -94,6 +95,14 @@ public class UserController {
         return ResponseEntity.ok(users);
     }
 
+    @GetMapping("/cursor")
+    public ResponseEntity<CursorPage<User>> getUsersAfter(
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "10") int size
+    ) {
+        return ResponseEntity.ok(userService.getUsersAfter(after, size));
+    }
+
     @GetMapping("/me")
     public ResponseEntity<?> getCurrentUser(HttpSession session) {
         Long userId = (Long) session.getAttribute("userId");
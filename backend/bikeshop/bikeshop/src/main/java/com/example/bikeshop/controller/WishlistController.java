@@ -15,6 +15,7 @@ import java.util.List;
 @RestController
 @RequestMapping("/api/wishlist")
 public class WishlistController {
+    private static final int MAX_CHECK_IDS = 100;
 
     @Autowired
     private WishlistService wishlistService;
@@ -30,6 +31,14 @@ public class WishlistController {
         return ResponseEntity.ok(message);
     }
 
+    // Body là danh sách productId (tối đa 100), trả về những id đang nằm trong wishlist
+    @PostMapping("/{userId}/contains")
+    public ResponseEntity<?> checkWishlisted(@PathVariable Long userId, @RequestBody List<Long> productIds) {
+        if (productIds.size() > MAX_CHECK_IDS) {
+            return ResponseEntity.badRequest().body("Chỉ kiểm tra tối đa " + MAX_CHECK_IDS + " sản phẩm mỗi lần");
+        }
+        return ResponseEntity.ok(wishlistService.findWishlisted(userId, productIds));
+    }
 
     @DeleteMapping("/delete/{itemId}")
     public ResponseEntity<String> removeFromWishlist(@PathVariable Long itemId) {
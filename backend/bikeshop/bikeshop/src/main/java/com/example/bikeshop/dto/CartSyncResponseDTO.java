@@ -0,0 +1,20 @@
+package com.example.bikeshop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CartSyncResponseDTO {
+    private int inserted;
+    private int updated;
+    private int deleted;
+    // Sản phẩm không tồn tại hoặc số lượng không hợp lệ, không được đưa vào giỏ
+    private List<Long> rejectedProductIds;
+}
@@ -0,0 +1,25 @@
+package com.example.bikeshop.dto;
+
+import com.example.bikeshop.service.ImageDerivativeService;
+import com.example.bikeshop.service.ImageDerivativeService.Variant;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+// Các kích thước của một ảnh sản phẩm: original là URL gốc trên Cloudinary, còn lại là đường dẫn tương đối trên server
+@Getter
+@Setter
+@AllArgsConstructor
+public class ImageVariantsDTO {
+    private String original;
+    private String thumb;
+    private String card;
+    private String zoom;
+
+    public static ImageVariantsDTO of(String originalUrl) {
+        return new ImageVariantsDTO(originalUrl,
+                ImageDerivativeService.urlOf(originalUrl, Variant.THUMB),
+                ImageDerivativeService.urlOf(originalUrl, Variant.CARD),
+                ImageDerivativeService.urlOf(originalUrl, Variant.ZOOM));
+    }
+}
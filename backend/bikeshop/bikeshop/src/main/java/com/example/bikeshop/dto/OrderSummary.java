@@ -0,0 +1,22 @@
+package com.example.bikeshop.dto;
+
+import com.example.bikeshop.entity.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Một dòng của bảng đơn hàng trang quản trị, lấy thẳng bằng constructor expression trong JPQL
+@Getter
+@Setter
+@AllArgsConstructor
+public class OrderSummary {
+    private Long id;
+    private String customerName;
+    private OrderStatus status;
+    private BigDecimal totalPrice;
+    private LocalDateTime createdAt;
+    private Long itemCount;
+}
@@ -0,0 +1,14 @@
+package com.example.bikeshop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class PriceBucketDTO {
+    private Double from;
+    private Double to;  // null nghĩa là không giới hạn trên
+    private long count;
+}
@@ -0,0 +1,18 @@
+package com.example.bikeshop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.List;
+import java.util.Map;
+
+@Getter
+@Setter
+@AllArgsConstructor
+public class ProductFacetsDTO {
+    private long total;
+    private Map<String, Long> categories;
+    private Map<String, Long> brands;
+    private List<PriceBucketDTO> priceBuckets;
+}
@@ -0,0 +1,22 @@
+package com.example.bikeshop.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// Một câu hỏi/đánh giá trong trang chi tiết sản phẩm, lấy bằng constructor expression chỉ join users.
+// Không kèm tên sản phẩm vì trang gọi đã có sẵn
+@Getter
+@Setter
+@AllArgsConstructor
+public class ProductQuestionDTO {
+    private Long id;
+    private Long userId;
+    private String username;
+    private String comment;
+    private LocalDateTime createdAt;
+    private String answer;
+    private LocalDateTime answeredAt;
+}
@@ -0,0 +1,49 @@
+package com.example.bikeshop.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// File trên BlobStore chờ xóa (outbox): ghi cùng transaction với lần xóa dòng Image, worker nền xóa ảnh thu nhỏ
+// và file rồi xóa dòng này
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "blob_deletions", indexes = {
+        @Index(name = "idx_blob_deletions_next_attempt_at", columnList = "next_attempt_at")
+})
+public class BlobDeletion {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "public_id", nullable = false)
+    private String publicId;
+
+    // URL gốc của file, để xóa cả thư mục ảnh thu nhỏ của nó; null với các dòng xếp trước khi có cột này
+    @Column(name = "image_url", length = 1000)
+    private String imageUrl;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public BlobDeletion(String publicId, String imageUrl, LocalDateTime now) {
+        this.publicId = publicId;
+        this.imageUrl = imageUrl;
+        this.nextAttemptAt = now;
+        this.createdAt = now;
+    }
+}
@@ -8,18 +8,19 @@ import lombok.Setter;
 @Entity
 @Getter
 @Setter
-@Table(name = "cart_item")
+@NamedEntityGraph(name = "cart-view", attributeNodes = @NamedAttributeNode("product"))
+@Table(name = "cart_item", uniqueConstraints = @UniqueConstraint(name = "uk_cart_item_user_product", columnNames = {"user_id", "product_id"}))
 public class CartItem {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     @JsonIgnore
     private User user;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id", nullable = false)
     @JsonIgnore
     private Product product;
@@ -0,0 +1,25 @@
+package com.example.bikeshop.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+// Doanh thu đã giao (DELIVERED) gộp theo ngày tạo đơn, cập nhật dần khi đơn đổi trạng thái
+@Entity
+@Getter
+@Setter
+@Table(name = "daily_revenue")
+public class DailyRevenue {
+    @Id
+    @Column(name = "revenue_date")
+    private LocalDate day;
+
+    @Column(name = "revenue", nullable = false, precision = 19, scale = 2)
+    private BigDecimal revenue = BigDecimal.ZERO;
+
+    @Column(name = "order_count", nullable = false)
+    private long orderCount;
+}
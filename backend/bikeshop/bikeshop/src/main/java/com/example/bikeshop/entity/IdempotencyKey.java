@@ -0,0 +1,34 @@
+package com.example.bikeshop.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+// Khóa Idempotency-Key dùng chung giữa các node; order_id null nghĩa là request đầu tiên còn đang chạy
+@Entity
+@Getter
+@Setter
+@Table(name = "idempotency_keys", indexes = {
+        @Index(name = "idx_idempotency_keys_created_at", columnList = "created_at")
+})
+public class IdempotencyKey {
+    @Id
+    @Column(name = "id", length = 150)
+    private String id;
+
+    @Column(name = "order_id")
+    private Long orderId;
+
+    // SHA-256 nội dung request đầu tiên; gửi lại cùng khóa với nội dung khác thì bị từ chối
+    @Column(name = "request_hash", length = 64)
+    private String requestHash;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // Lúc node hiện tại giành được khóa; order_id vẫn null sau thời hạn lease thì coi như node đó đã chết
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+}
@@ -7,7 +7,11 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 @Entity
-@Table(name = "image")
+@NamedEntityGraph(name = "image-list", attributeNodes = @NamedAttributeNode("product"))
+@Table(name = "image", indexes = {
+        @Index(name = "idx_image_content_hash", columnList = "content_hash"),
+        @Index(name = "idx_image_public_id", columnList = "public_id")
+})
 @Getter
 @Setter
 @AllArgsConstructor
@@ -22,9 +26,16 @@ public class Image {
     @Column(name = "image_url")
     private String imageUrl;
 
+    // Id file trên BlobStore. Mỗi dòng là một tham chiếu của một sản phẩm; ảnh trùng nội dung dùng chung file nên
+    // nhiều dòng có thể cùng public_id, file chỉ bị xóa khi không còn dòng nào
+    @Column(name = "public_id")
     private String publicId;
 
-    @ManyToOne
+    // SHA-256 (hex) của nội dung file; ảnh tải lên trước khi có cột này để null
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id")
     private Product product;
 
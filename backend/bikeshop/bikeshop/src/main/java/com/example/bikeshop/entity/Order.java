@@ -1,11 +1,14 @@
 package com.example.bikeshop.entity;
 
+import com.example.bikeshop.service.DashboardCountersListener;
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.BatchSize;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -13,7 +16,17 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@EntityListeners(DashboardCountersListener.class)
+@NamedEntityGraph(name = "order-summary", attributeNodes = @NamedAttributeNode("user"))
+@NamedEntityGraph(name = "order-full", attributeNodes = {
+        @NamedAttributeNode("user"),
+        @NamedAttributeNode("shippingInfo"),
+        @NamedAttributeNode(value = "items", subgraph = "order-items")
+}, subgraphs = @NamedSubgraph(name = "order-items", attributeNodes = @NamedAttributeNode("product")))
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_created_at_id", columnList = "created_at, id")
+})
 @Getter
 @Setter
 public class Order {
@@ -24,14 +37,21 @@ public class Order {
     @Column(name = "customer_name")
     private String customerName;
 
-    @Column(name = "created_at")
+    @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
 
-    @ManyToOne
+    // Thời điểm đơn (lại) vào trạng thái PENDING, hạn thanh toán tính từ đây; đơn cũ chưa có cột này thì dùng created_at
+    @JsonIgnore
+    @Column(name = "pending_since")
+    private LocalDateTime pendingSince;
+
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;
 
-    @OneToMany(mappedBy = "order", cascade = CascadeType.ALL)
+    // Danh sách đơn phân trang không join items (join collection phải phân trang trong bộ nhớ), nạp theo lô
+    @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
+    @BatchSize(size = 50)
     @JsonManagedReference
     private List<OrderItem> items = new ArrayList<>();
 
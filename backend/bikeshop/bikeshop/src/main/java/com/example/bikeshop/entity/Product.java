@@ -1,14 +1,23 @@
 package com.example.bikeshop.entity;
 
+import com.example.bikeshop.dto.ImageVariantsDTO;
+import com.example.bikeshop.service.DashboardCountersListener;
 import com.example.bikeshop.service.StringListConverter;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.BatchSize;
 
 import java.util.List;
 
 @Entity
+@EntityListeners(DashboardCountersListener.class)
 @Table(name="products")
+@JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
+// Proxy sản phẩm (ví dụ product của item trong danh sách đơn) được nạp theo lô
+@BatchSize(size = 50)
 @Getter
 @Setter
 public class Product {
@@ -43,4 +52,13 @@ public class Product {
     @Column(name = "quantity")
     private Integer quantity;
 
+    // Ảnh thu nhỏ cho trang danh sách, cùng thứ tự với imageUrls; chỉ có trong response, không lưu DB
+    @Transient
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    public List<ImageVariantsDTO> getImageVariants() {
+        if (imageUrls == null) {
+            return List.of();
+        }
+        return imageUrls.stream().map(ImageVariantsDTO::of).toList();
+    }
 }
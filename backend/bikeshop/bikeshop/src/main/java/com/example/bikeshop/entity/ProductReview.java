@@ -7,7 +7,14 @@ import lombok.Setter;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "product_reviews")
+@NamedEntityGraph(name = "review-list", attributeNodes = {
+        @NamedAttributeNode("user"),
+        @NamedAttributeNode("product")
+})
+@Table(name = "product_reviews", indexes = {
+        @Index(name = "idx_product_reviews_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_product_reviews_product_created_at_id", columnList = "product_id, created_at, id")
+})
 @Getter
 @Setter
 public class ProductReview {
@@ -16,18 +23,18 @@ public class ProductReview {
     @Column(name = "id")
     private Long id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id")
     private Product product;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;
 
     @Column(name = "comment")
     private String comment;
 
-    @Column(name = "created_at")
+    @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
 
     @Column(name = "answer")
@@ -9,7 +9,10 @@ import java.time.LocalDateTime;
 @Entity
 @Getter
 @Setter
-@Table(name = "shop_reviews")
+@NamedEntityGraph(name = "shop-review-list", attributeNodes = @NamedAttributeNode("user"))
+@Table(name = "shop_reviews", indexes = {
+        @Index(name = "idx_shop_reviews_created_at_id", columnList = "created_at, id")
+})
 public class ShopReview {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -22,10 +25,10 @@ public class ShopReview {
     @Column(name = "rating")
     private int rating;
 
-    @Column(name = "created_at")
+    @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;
 }
@@ -0,0 +1,7 @@
+package com.example.bikeshop.exception;
+
+public class IdempotencyKeyInProgressException extends RuntimeException {
+    public IdempotencyKeyInProgressException() {
+        super("Yêu cầu trước với cùng Idempotency-Key vẫn đang được xử lý, vui lòng thử lại sau");
+    }
+}
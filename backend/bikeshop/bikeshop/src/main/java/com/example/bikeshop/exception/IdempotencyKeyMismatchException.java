@@ -0,0 +1,7 @@
+package com.example.bikeshop.exception;
+
+public class IdempotencyKeyMismatchException extends RuntimeException {
+    public IdempotencyKeyMismatchException() {
+        super("Idempotency-Key đã được dùng cho một yêu cầu có nội dung khác");
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.bikeshop.exception;
+
+public class InsufficientStockException extends RuntimeException {
+    private final Long productId;
+
+    public InsufficientStockException(Long productId) {
+        super("Sản phẩm với ID " + productId + " không đủ hàng trong kho");
+        this.productId = productId;
+    }
+
+    public Long getProductId() {
+        return productId;
+    }
+}
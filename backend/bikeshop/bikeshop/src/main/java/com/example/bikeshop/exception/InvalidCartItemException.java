@@ -0,0 +1,7 @@
+package com.example.bikeshop.exception;
+
+public class InvalidCartItemException extends RuntimeException {
+    public InvalidCartItemException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.bikeshop.repository;
+
+import com.example.bikeshop.entity.BlobDeletion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface BlobDeletionRepository extends JpaRepository<BlobDeletion, Long> {
+    // SKIP LOCKED: nhiều node cùng chạy worker thì mỗi node lấy các dòng khác nhau, không chờ khóa của nhau
+    @Query(value = "SELECT * FROM blob_deletions WHERE next_attempt_at <= :now ORDER BY next_attempt_at LIMIT :limit " +
+            "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<BlobDeletion> lockDue(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE BlobDeletion d SET d.nextAttemptAt = :until WHERE d.id IN :ids")
+    int lease(@Param("ids") Collection<Long> ids, @Param("until") LocalDateTime until);
+}
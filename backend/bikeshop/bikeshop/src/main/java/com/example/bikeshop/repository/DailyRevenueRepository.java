@@ -0,0 +1,28 @@
+package com.example.bikeshop.repository;
+
+import com.example.bikeshop.entity.DailyRevenue;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DailyRevenueRepository extends JpaRepository<DailyRevenue, LocalDate> {
+    // Cộng dồn vào dòng của ngày (tạo mới nếu chưa có) trong một câu lệnh, không cần đọc trước
+    @Modifying
+    @Query(value = "INSERT INTO daily_revenue (revenue_date, revenue, order_count) VALUES (:day, :revenue, :orders) " +
+            "ON DUPLICATE KEY UPDATE revenue = revenue + VALUES(revenue), order_count = order_count + VALUES(order_count)",
+            nativeQuery = true)
+    int add(@Param("day") LocalDate day, @Param("revenue") BigDecimal revenue, @Param("orders") long orders);
+
+    @Query("SELECT COALESCE(SUM(d.revenue), 0) FROM DailyRevenue d WHERE d.day >= :from AND d.day < :to")
+    BigDecimal sumRevenueBetween(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Query("SELECT COALESCE(SUM(d.revenue), 0) FROM DailyRevenue d")
+    BigDecimal sumRevenue();
+
+    List<DailyRevenue> findByDayGreaterThanEqualAndDayLessThanOrderByDayAsc(LocalDate from, LocalDate to);
+}
@@ -0,0 +1,45 @@
+package com.example.bikeshop.repository;
+
+import com.example.bikeshop.entity.IdempotencyKey;
+import jakarta.transaction.Transactional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, String> {
+    // Giành quyền xử lý khóa: trả về 1 nếu node này chèn được, 0 nếu khóa đã tồn tại
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO idempotency_keys (id, request_hash, created_at, claimed_at) "
+            + "VALUES (:id, :requestHash, :claimedAt, :claimedAt)",
+            nativeQuery = true)
+    int claim(@Param("id") String id, @Param("requestHash") String requestHash, @Param("claimedAt") LocalDateTime claimedAt);
+
+    // Giành lại khóa mà node trước bỏ dở (order_id vẫn null, lease đã hết); chỉ một node cập nhật được
+    // dòng cũ thiếu claimed_at thì tính theo created_at
+    @Transactional
+    @Modifying
+    @Query("UPDATE IdempotencyKey k SET k.claimedAt = :claimedAt WHERE k.id = :id AND k.orderId IS NULL "
+            + "AND COALESCE(k.claimedAt, k.createdAt) < :staleBefore")
+    int reclaim(@Param("id") String id, @Param("claimedAt") LocalDateTime claimedAt,
+            @Param("staleBefore") LocalDateTime staleBefore);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE IdempotencyKey k SET k.orderId = :orderId WHERE k.id = :id AND k.orderId IS NULL")
+    int complete(@Param("id") String id, @Param("orderId") Long orderId);
+
+    // Chỉ xóa khi vẫn đang giữ lease; khóa đã bị node khác giành lại thì để nguyên
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyKey k WHERE k.id = :id AND k.orderId IS NULL AND k.claimedAt = :claimedAt")
+    int release(@Param("id") String id, @Param("claimedAt") LocalDateTime claimedAt);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyKey k WHERE k.createdAt < :before")
+    int deleteExpired(@Param("before") LocalDateTime before);
+}
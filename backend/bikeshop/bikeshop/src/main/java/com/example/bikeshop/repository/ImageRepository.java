@@ -1,12 +1,17 @@
 package com.example.bikeshop.repository;
 
 import com.example.bikeshop.entity.Image;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ImageRepository extends JpaRepository<Image, Integer> {
+    @EntityGraph("image-list")
     List<Image> findByOrderById();
+
+    List<Image> findByContentHashIn(Collection<String> contentHashes);
 }
@@ -2,6 +2,14 @@ package com.example.bikeshop.repository;
 
 import com.example.bikeshop.entity.OrderItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
 
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
+    // Tổng số lượng theo sản phẩm của nhiều đơn, để trả kho một lần cho cả lô
+    @Query("SELECT oi.product.id, SUM(oi.quantity) FROM OrderItem oi " +
+            "WHERE oi.order.id IN :orderIds GROUP BY oi.product.id")
+    List<Object[]> sumQuantitiesByProduct(@Param("orderIds") List<Long> orderIds);
 }
@@ -1,40 +1,99 @@
 package com.example.bikeshop.repository;
 
-import com.example.bikeshop.dto.RevenueByTimeResponse;
+import com.example.bikeshop.dto.OrderSummary;
 import com.example.bikeshop.entity.Order;
 import com.example.bikeshop.entity.OrderStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import jakarta.persistence.LockModeType;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 public interface OrderRepository extends JpaRepository<Order, Long>{
-    @Query("SELECT SUM(o.totalPrice) FROM Order o WHERE o.status = 'DELIVERED'")
-    Double sumTotalRevenue();
+    // Xem chi tiết một đơn: lấy luôn người đặt, item, sản phẩm và thông tin giao hàng
+    @Override
+    @EntityGraph("order-full")
+    Optional<Order> findById(Long id);
 
-    @Query("SELECT SUM(o.totalPrice) FROM Order o WHERE FUNCTION('WEEK', o.createdAt) = :week AND FUNCTION('YEAR', o.createdAt) = :year")
-    Double getRevenueByWeek(@Param("week") int week, @Param("year") int year);
+    // Danh sách có phân trang chỉ join người đặt; items được nạp theo lô (@BatchSize)
+    @Override
+    @EntityGraph("order-summary")
+    Page<Order> findAll(Pageable pageable);
 
-    @Query("SELECT SUM(o.totalPrice) FROM Order o WHERE FUNCTION('MONTH', o.createdAt) = :month AND FUNCTION('YEAR', o.createdAt) = :year")
-    Double getRevenueByMonth(@Param("month") int month, @Param("year") int year);
-
-    @Query("SELECT SUM(o.totalPrice) FROM Order o WHERE FUNCTION('YEAR', o.createdAt) = :year")
-    Double getRevenueByYear(@Param("year") int year);
+    // Dựng lại bảng daily_revenue: doanh thu DELIVERED gộp theo ngày tạo đơn
+    @Query(value = "SELECT DATE(created_at), COALESCE(SUM(total_price), 0), COUNT(*) FROM orders " +
+            "WHERE status = 'DELIVERED' GROUP BY DATE(created_at)", nativeQuery = true)
+    List<Object[]> sumDeliveredRevenueByDay();
 
     @Query("SELECT COUNT(o), COALESCE(SUM(o.totalPrice), 0) FROM Order o WHERE o.user.id = :userId AND o.status = 'DELIVERED'")
     List<Object[]> getUserOrderStats(@Param("userId") Long userId);
 
+    @EntityGraph("order-full")
     @Query("SELECT o FROM Order o WHERE o.user.id = :userId")
     List<Order> findByUserId(@Param("userId") Long userId);
 
-    @Query("SELECT o FROM Order o " +
+    String ORDER_SUMMARY = "new com.example.bikeshop.dto.OrderSummary(o.id, o.customerName, o.status, " +
+            "o.totalPrice, o.createdAt, (SELECT COUNT(i) FROM OrderItem i WHERE i.order = o))";
+
+    // Danh sách đơn cho trang quản trị: chỉ các cột hiển thị, không nạp user/items/product
+    @Query(value = "SELECT " + ORDER_SUMMARY + " FROM Order o",
+            countQuery = "SELECT COUNT(o) FROM Order o")
+    Page<OrderSummary> findSummaries(Pageable pageable);
+
+    // Dự phòng khi OrderSearchIndex chưa dựng xong
+    @Query(value = "SELECT " + ORDER_SUMMARY + " FROM Order o " +
             "WHERE (:keyword IS NULL OR LOWER(o.customerName) LIKE LOWER(CONCAT('%', :keyword, '%')) " +
             "   OR STR(o.id) LIKE CONCAT('%', :keyword, '%')) " +
-            "AND (:status IS NULL OR o.status = :status)")
-    List<Order> searchOrders(@Param("keyword") String keyword,
-                             @Param("status") OrderStatus status);
+            "AND (:status IS NULL OR o.status = :status) " +
+            "ORDER BY o.id DESC",
+            countQuery = "SELECT COUNT(o) FROM Order o " +
+                    "WHERE (:keyword IS NULL OR LOWER(o.customerName) LIKE LOWER(CONCAT('%', :keyword, '%')) " +
+                    "   OR STR(o.id) LIKE CONCAT('%', :keyword, '%')) " +
+                    "AND (:status IS NULL OR o.status = :status)")
+    Page<OrderSummary> searchOrders(@Param("keyword") String keyword,
+                                    @Param("status") OrderStatus status,
+                                    Pageable pageable);
+
+    // Nạp một trang kết quả từ OrderSearchIndex trong một truy vấn
+    @Query("SELECT " + ORDER_SUMMARY + " FROM Order o WHERE o.id IN :ids")
+    List<OrderSummary> findSummariesByIds(@Param("ids") List<Long> ids);
+
+    // Dữ liệu dựng OrderSearchIndex: id, tên khách, trạng thái, SĐT người nhận
+    @Query("SELECT o.id, o.customerName, o.status, s.phone FROM Order o LEFT JOIN o.shippingInfo s")
+    List<Object[]> findSearchDocuments();
+
+    // Phân trang keyset: mới nhất trước, (createdAt, id) giảm dần
+    @EntityGraph("order-summary")
+    @Query("SELECT o FROM Order o ORDER BY o.createdAt DESC, o.id DESC")
+    List<Order> findLatest(Pageable pageable);
+
+    @EntityGraph("order-summary")
+    @Query("SELECT o FROM Order o " +
+            "WHERE o.createdAt < :createdAt OR (o.createdAt = :createdAt AND o.id < :id) " +
+            "ORDER BY o.createdAt DESC, o.id DESC")
+    List<Order> findLatestBefore(@Param("createdAt") LocalDateTime createdAt,
+                                 @Param("id") Long id,
+                                 Pageable pageable);
+
+    // Nạp lại timer wheel khi khởi động: chỉ lấy (id, thời điểm vào PENDING) của đơn còn chờ
+    @Query("SELECT o.id, COALESCE(o.pendingSince, o.createdAt) FROM Order o WHERE o.status = 'PENDING'")
+    List<Object[]> findPendingDeadlines();
+
+    // Khóa các đơn còn PENDING trong lô, để biết chính xác đơn nào được hủy và trả hàng
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT o.id FROM Order o WHERE o.id IN :ids AND o.status = 'PENDING'")
+    List<Long> lockPendingIds(@Param("ids") List<Long> ids);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Order o SET o.status = 'CANCELLED' WHERE o.id IN :ids AND o.status = 'PENDING'")
+    int cancelPending(@Param("ids") List<Long> ids);
 }
@@ -1,18 +1,77 @@
 package com.example.bikeshop.repository;
 
+import com.example.bikeshop.dto.ProductQuestionDTO;
 import com.example.bikeshop.entity.ProductReview;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ProductReviewRepository extends JpaRepository<ProductReview, Long> {
+    String PRODUCT_QUESTION = "new com.example.bikeshop.dto.ProductQuestionDTO(r.id, u.id, u.username, r.comment, " +
+            "r.createdAt, r.answer, r.answeredAt)";
+    // Khớp câu hỏi hoặc câu trả lời bằng index FULLTEXT (ngram) trên (comment, answer)
+    String FULLTEXT_FILTER = "FROM product_reviews r WHERE MATCH(r.comment, r.answer) AGAINST (:query IN BOOLEAN MODE) " +
+            "AND (:productId IS NULL OR r.product_id = :productId)";
+
+    @EntityGraph("review-list")
     List<ProductReview> findByProductId(Long productId);
 
+    @EntityGraph("review-list")
     Page<ProductReview> findAll(Pageable pageable);
 
+    @EntityGraph("review-list")
     Page<ProductReview> findByAnswerIsNotNull(Pageable pageable);
+
+    @EntityGraph("review-list")
+    @Query("SELECT r FROM ProductReview r ORDER BY r.createdAt DESC, r.id DESC")
+    List<ProductReview> findLatest(Pageable pageable);
+
+    @EntityGraph("review-list")
+    @Query("SELECT r FROM ProductReview r " +
+            "WHERE r.createdAt < :createdAt OR (r.createdAt = :createdAt AND r.id < :id) " +
+            "ORDER BY r.createdAt DESC, r.id DESC")
+    List<ProductReview> findLatestBefore(@Param("createdAt") LocalDateTime createdAt,
+                                         @Param("id") Long id,
+                                         Pageable pageable);
+
+    // Hỏi đáp của một sản phẩm theo keyset (created_at DESC, id DESC), đi theo index (product_id, created_at, id)
+    @Query("SELECT " + PRODUCT_QUESTION + " FROM ProductReview r LEFT JOIN r.user u " +
+            "WHERE r.product.id = :productId ORDER BY r.createdAt DESC, r.id DESC")
+    List<ProductQuestionDTO> findQuestions(@Param("productId") Long productId, Pageable pageable);
+
+    @Query("SELECT " + PRODUCT_QUESTION + " FROM ProductReview r LEFT JOIN r.user u " +
+            "WHERE r.product.id = :productId " +
+            "AND (r.createdAt < :createdAt OR (r.createdAt = :createdAt AND r.id < :id)) " +
+            "ORDER BY r.createdAt DESC, r.id DESC")
+    List<ProductQuestionDTO> findQuestionsBefore(@Param("productId") Long productId,
+                                                 @Param("createdAt") LocalDateTime createdAt,
+                                                 @Param("id") Long id,
+                                                 Pageable pageable);
+
+    // [tổng số câu hỏi, số câu đã trả lời]
+    @Query("SELECT COUNT(r), COUNT(r.answer) FROM ProductReview r WHERE r.product.id = :productId")
+    List<Object[]> countQuestions(@Param("productId") Long productId);
+
+    @EntityGraph("review-list")
+    Page<ProductReview> findAll(Specification<ProductReview> spec, Pageable pageable);
+
+    @Query(value = "SELECT r.id " + FULLTEXT_FILTER + " ORDER BY r.id DESC",
+            countQuery = "SELECT COUNT(*) " + FULLTEXT_FILTER,
+            nativeQuery = true)
+    Page<Long> searchIdsFulltext(@Param("query") String query,
+                                 @Param("productId") Long productId,
+                                 Pageable pageable);
+
+    @EntityGraph("review-list")
+    List<ProductReview> findByIdIn(Collection<Long> ids);
 }
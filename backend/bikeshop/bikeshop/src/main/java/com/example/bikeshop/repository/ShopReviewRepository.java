@@ -4,17 +4,30 @@ import com.example.bikeshop.entity.ShopReview;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ShopReviewRepository extends JpaRepository<ShopReview, Long> {
+    // Khớp comment bằng index FULLTEXT (ngram), hoặc username như ShopReviewSpecification.containsKeyword.
+    // Join với bảng dẫn xuất thay vì IN (... UNION ...): MySQL không làm phẳng được IN có UNION
+    // và có thể chạy nó như subquery phụ thuộc cho từng dòng
+    String FULLTEXT_FILTER = "FROM shop_reviews r JOIN (" +
+            "SELECT s.id FROM shop_reviews s WHERE MATCH(s.comment) AGAINST (:query IN BOOLEAN MODE) " +
+            "UNION SELECT s.id FROM shop_reviews s JOIN users u ON u.id = s.user_id " +
+            "WHERE LOWER(u.username) LIKE CONCAT('%', LOWER(:keyword), '%')) m ON m.id = r.id " +
+            "WHERE (:rating IS NULL OR r.rating = :rating)";
+
     boolean existsByUserId(Long userId);
 
+    @EntityGraph("shop-review-list")
     List<ShopReview> findByUserId(Long userId);
 
     @Query("SELECT AVG(r.rating) FROM ShopReview r")
@@ -25,5 +38,29 @@ public interface ShopReviewRepository extends JpaRepository<ShopReview, Long> {
     @Query("SELECT r.rating AS rating, COUNT(r) AS count FROM ShopReview r GROUP BY r.rating")
     List<Object[]> findRatingCounts();
 
+    @EntityGraph("shop-review-list")
     Page<ShopReview> findAll(Specification<ShopReview> spec, Pageable pageable);
+
+    @EntityGraph("shop-review-list")
+    @Query("SELECT r FROM ShopReview r ORDER BY r.createdAt DESC, r.id DESC")
+    List<ShopReview> findLatest(Pageable pageable);
+
+    @EntityGraph("shop-review-list")
+    @Query("SELECT r FROM ShopReview r " +
+            "WHERE r.createdAt < :createdAt OR (r.createdAt = :createdAt AND r.id < :id) " +
+            "ORDER BY r.createdAt DESC, r.id DESC")
+    List<ShopReview> findLatestBefore(@Param("createdAt") LocalDateTime createdAt,
+                                      @Param("id") Long id,
+                                      Pageable pageable);
+
+    @Query(value = "SELECT r.id " + FULLTEXT_FILTER + " ORDER BY r.id DESC",
+            countQuery = "SELECT COUNT(*) " + FULLTEXT_FILTER,
+            nativeQuery = true)
+    Page<Long> searchIdsFulltext(@Param("query") String query,
+                                 @Param("keyword") String keyword,
+                                 @Param("rating") Integer rating,
+                                 Pageable pageable);
+
+    @EntityGraph("shop-review-list")
+    List<ShopReview> findByIdIn(Collection<Long> ids);
 }
@@ -1,7 +1,11 @@
 package com.example.bikeshop.repository;
 
 import com.example.bikeshop.entity.WishlistItem;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -9,7 +13,17 @@ import java.util.Optional;
 
 @Repository
 public interface WishlistRepository extends JpaRepository<WishlistItem, Long> {
+    @EntityGraph("wishlist-view")
     List<WishlistItem> findByUserId(Long userId);
     Optional<WishlistItem> findByUserIdAndProductId(Long userId, Long productId);
     void deleteByUserIdAndProductId(Long userId, Long productId);
-}
\ No newline at end of file
+
+    @Query("SELECT w.product.id FROM WishlistItem w WHERE w.user.id = :userId")
+    List<Long> findProductIdsByUserId(@Param("userId") Long userId);
+
+    // Dựa vào khóa duy nhất (user_id, product_id): bấm thêm hai lần cũng chỉ có một dòng
+    @Modifying
+    @Query(value = "INSERT INTO wishlist (user_id, product_id) VALUES (:userId, :productId) " +
+            "ON DUPLICATE KEY UPDATE product_id = product_id", nativeQuery = true)
+    int upsert(@Param("userId") Long userId, @Param("productId") Long productId);
+}
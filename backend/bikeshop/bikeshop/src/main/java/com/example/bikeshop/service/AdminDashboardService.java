@@ -4,9 +4,21 @@ import com.example.bikeshop.dto.AdminDashboardResponse;
 import com.example.bikeshop.repository.OrderRepository;
 import com.example.bikeshop.repository.ProductRepository;
 import com.example.bikeshop.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 @Service
 public class AdminDashboardService {
 
@@ -19,33 +31,84 @@ public class AdminDashboardService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private RevenueRollupService revenueRollupService;
+
+    @Autowired
+    private DashboardCounters dashboardCounters;
+
+    // Chạy song song 4 truy vấn đếm khi đối soát
+    private final ExecutorService countExecutor = Executors.newFixedThreadPool(4);
+
     public AdminDashboardResponse getDashboardData() {
-        long totalProducts = productRepository.count();
-        long totalOrders = orderRepository.count();
-        long totalUsers = userRepository.count();
-        Double totalRevenue = orderRepository.sumTotalRevenue();
+        // Bộ đếm chưa sẵn sàng (vừa khởi động) thì đếm từ DB, đồng thời làm ấm bộ đếm
+        DashboardCounters.Snapshot snapshot = dashboardCounters.isWarm()
+                ? dashboardCounters.snapshot()
+                : reconcileCounters();
 
         return new AdminDashboardResponse(
-                totalProducts,
-                totalOrders,
-                totalRevenue != null ? totalRevenue : 0.0,
-                totalUsers
+                snapshot.products(),
+                snapshot.orders(),
+                snapshot.revenue().doubleValue(),
+                snapshot.users()
         );
     }
 
+    // Đối soát bộ đếm với DB để sửa sai lệch (xóa hàng loạt, thao tác ngoài ứng dụng...)
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${dashboard.counters.reconcile-ms:300000}", initialDelayString = "${dashboard.counters.reconcile-ms:300000}")
+    public void reconcile() {
+        reconcileCounters();
+    }
+
+    private DashboardCounters.Snapshot reconcileCounters() {
+        CompletableFuture<Long> products = CompletableFuture.supplyAsync(productRepository::count, countExecutor);
+        CompletableFuture<Long> orders = CompletableFuture.supplyAsync(orderRepository::count, countExecutor);
+        CompletableFuture<Long> users = CompletableFuture.supplyAsync(userRepository::count, countExecutor);
+        CompletableFuture<BigDecimal> revenue = CompletableFuture.supplyAsync(revenueRollupService::totalRevenue, countExecutor);
+
+        DashboardCounters.Snapshot snapshot = new DashboardCounters.Snapshot(
+                products.join(),
+                orders.join(),
+                users.join(),
+                revenue.join()
+        );
+        dashboardCounters.reset(snapshot);
+        return snapshot;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        countExecutor.shutdown();
+    }
+
+    // Tuần theo quy ước WEEK() mặc định của MySQL: tuần bắt đầu Chủ nhật,
+    // tuần 1 bắt đầu từ Chủ nhật đầu tiên của năm, các ngày trước đó thuộc tuần 0
     public double getRevenueByWeek(int week, int year) {
-        Double revenue = orderRepository.getRevenueByWeek(week, year);
-        return revenue != null ? revenue : 0.0;
+        if (week < 0 || week > 53) {
+            return 0.0;
+        }
+        LocalDate yearStart = LocalDate.of(year, 1, 1);
+        LocalDate yearEnd = yearStart.plusYears(1);
+        LocalDate firstSunday = yearStart.with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY));
+        LocalDate from = week == 0 ? yearStart : firstSunday.plusWeeks(week - 1);
+        LocalDate to = week == 0 ? firstSunday : from.plusWeeks(1);
+        if (from.isAfter(yearEnd) || !from.isBefore(to)) {
+            return 0.0;
+        }
+        return revenueRollupService.revenueBetween(from, to.isAfter(yearEnd) ? yearEnd : to);
     }
 
     public double getRevenueByMonth(int month, int year) {
-        Double revenue = orderRepository.getRevenueByMonth(month, year);
-        return revenue != null ? revenue : 0.0;
+        if (month < 1 || month > 12) {
+            return 0.0;
+        }
+        LocalDate from = LocalDate.of(year, month, 1);
+        return revenueRollupService.revenueBetween(from, from.plusMonths(1));
     }
 
     public double getRevenueByYear(int year) {
-        Double revenue = orderRepository.getRevenueByYear(year);
-        return revenue != null ? revenue : 0.0;
+        LocalDate from = LocalDate.of(year, 1, 1);
+        return revenueRollupService.revenueBetween(from, from.plusYears(1));
     }
 }
-
@@ -0,0 +1,68 @@
+package com.example.bikeshop.service;
+
+import com.example.bikeshop.entity.BlobDeletion;
+import com.example.bikeshop.repository.BlobDeletionRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+// Hàng đợi xóa file trên BlobStore, lưu trong bảng blob_deletions để không mất khi tắt ứng dụng.
+// enqueue chạy trong transaction của nơi gọi, nên file chỉ bị xóa khi việc xóa dòng Image đã commit.
+@Service
+public class BlobDeletionQueue {
+
+    @Autowired
+    private BlobDeletionRepository blobDeletionRepository;
+
+    // Thời gian một lô đã nhận được giữ riêng cho worker; worker chết giữa chừng thì sau chừng này lô được thử lại
+    @Value("${image.deletion.lease-ms:300000}")
+    private long leaseMillis;
+
+    @Value("${image.deletion.backoff-ms:5000}")
+    private long backoffMillis;
+
+    @Value("${image.deletion.max-backoff-ms:3600000}")
+    private long maxBackoffMillis;
+
+    @Transactional
+    public void enqueue(String publicId, String imageUrl) {
+        blobDeletionRepository.save(new BlobDeletion(publicId, imageUrl, LocalDateTime.now()));
+    }
+
+    // Nhận tối đa limit dòng đến hạn và đẩy hạn của chúng ra sau lease, để worker xóa file ngoài transaction
+    @Transactional
+    public List<BlobDeletion> claim(int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<BlobDeletion> due = blobDeletionRepository.lockDue(now, limit);
+        if (!due.isEmpty()) {
+            blobDeletionRepository.lease(due.stream().map(BlobDeletion::getId).toList(), now.plusNanos(leaseMillis * 1_000_000));
+        }
+        return due;
+    }
+
+    @Transactional
+    public void completed(Collection<Long> ids) {
+        blobDeletionRepository.deleteAllByIdInBatch(ids);
+    }
+
+    // Lần thử thứ n lỗi thì chờ backoff * 2^(n-1), tối đa max-backoff-ms, rồi thử lại (không bao giờ bỏ)
+    @Transactional
+    public void failed(BlobDeletion deletion, String error) {
+        blobDeletionRepository.findById(deletion.getId()).ifPresent(current -> {
+            int attempts = current.getAttempts() + 1;
+            current.setAttempts(attempts);
+            current.setNextAttemptAt(LocalDateTime.now().plusNanos(backoffMillis(attempts) * 1_000_000));
+            current.setLastError(error != null && error.length() > 500 ? error.substring(0, 500) : error);
+        });
+    }
+
+    long backoffMillis(int attempts) {
+        int shift = Math.min(attempts - 1, 30);
+        return Math.min(maxBackoffMillis, backoffMillis << shift);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.bikeshop.service;
+
+import com.example.bikeshop.entity.BlobDeletion;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Xóa dần các file trong blob_deletions theo lô, cùng ảnh thu nhỏ của chúng; lỗi thì BlobDeletionQueue hẹn lần thử sau
+// với thời gian chờ tăng dần
+@Component
+public class BlobDeletionWorker {
+
+    @Autowired
+    private BlobDeletionQueue blobDeletionQueue;
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private ImageDerivativeService derivativeService;
+
+    @Value("${image.deletion.batch-size:50}")
+    private int batchSize;
+
+    @Scheduled(fixedDelayString = "${image.deletion.poll-ms:5000}")
+    public void drain() {
+        List<BlobDeletion> batch;
+        do {
+            try {
+                batch = blobDeletionQueue.claim(batchSize);
+            } catch (RuntimeException e) {
+                System.err.println("Không đọc được hàng đợi xóa ảnh: " + e.getMessage());
+                return;
+            }
+            List<Long> done = new ArrayList<>();
+            for (BlobDeletion deletion : batch) {
+                try {
+                    // Ảnh thu nhỏ trước: chúng được phục vụ với cache immutable, không được sống lâu hơn ảnh gốc
+                    if (deletion.getImageUrl() != null) {
+                        derivativeService.delete(deletion.getImageUrl());
+                    }
+                    blobStore.delete(deletion.getPublicId());
+                    done.add(deletion.getId());
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Xóa ảnh " + deletion.getPublicId() + " thất bại (lần " + (deletion.getAttempts() + 1) + "): " + e.getMessage());
+                    blobDeletionQueue.failed(deletion, e.getMessage());
+                }
+            }
+            if (!done.isEmpty()) {
+                blobDeletionQueue.completed(done);
+            }
+        } while (batch.size() == batchSize);
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.bikeshop.service;
+
+import java.util.Locale;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+// id cho các BlobStore tự sinh khóa (local, memory): 32 ký tự hex ngẫu nhiên + phần mở rộng của file gốc
+final class BlobIds {
+    private static final Pattern ID = Pattern.compile("[0-9a-f]{32}(\\.[a-z0-9]{1,5})?");
+    private static final Pattern EXTENSION = Pattern.compile("[a-z0-9]{1,5}");
+
+    private BlobIds() {
+    }
+
+    static String newId(String filename) {
+        String id = UUID.randomUUID().toString().replace("-", "");
+        if (filename != null && filename.lastIndexOf('.') >= 0) {
+            String extension = filename.substring(filename.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+            if (EXTENSION.matcher(extension).matches()) {
+                return id + "." + extension;
+            }
+        }
+        return id;
+    }
+
+    // id đến từ request (đường dẫn /api/blobs/{id}) nên phải kiểm tra trước khi ghép vào đường dẫn file
+    static boolean isValid(String id) {
+        return id != null && ID.matcher(id).matches();
+    }
+}
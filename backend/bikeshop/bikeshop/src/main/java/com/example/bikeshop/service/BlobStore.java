@@ -0,0 +1,20 @@
+package com.example.bikeshop.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// Nơi lưu file ảnh gốc. Chọn bằng storage.type: cloudinary (mặc định), local (thư mục trên đĩa) hoặc memory (cho test/benchmark).
+// id là khóa để xóa/đọc lại (publicId với Cloudinary), url là địa chỉ công khai lưu vào Image/Product.imageUrls.
+public interface BlobStore {
+
+    record StoredBlob(String id, String url) {
+    }
+
+    // Đọc hết content rồi lưu; không đóng content
+    StoredBlob put(String filename, InputStream content) throws IOException;
+
+    InputStream open(String id) throws IOException;
+
+    // Xóa id không tồn tại không phải lỗi
+    void delete(String id) throws IOException;
+}
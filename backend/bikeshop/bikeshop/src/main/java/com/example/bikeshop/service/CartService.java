@@ -1,84 +1,64 @@
 package com.example.bikeshop.service;
 
-import com.example.bikeshop.dto.CartItemResponseDTO;
+import com.example.bikeshop.dto.CartItemRequestDTO;
 import com.example.bikeshop.dto.CartResponseDTO;
-import com.example.bikeshop.entity.CartItem;
-import com.example.bikeshop.entity.Product;
-import com.example.bikeshop.entity.User;
-import com.example.bikeshop.repository.CartItemRepository;
+import com.example.bikeshop.dto.CartSyncResponseDTO;
 import com.example.bikeshop.repository.ProductRepository;
 import com.example.bikeshop.repository.UserRepository;
-import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 
 @Service
 public class CartService {
-    @Autowired private CartItemRepository cartItemRepo;
     @Autowired private UserRepository userRepo;
     @Autowired private ProductRepository productRepo;
+    @Autowired private CartStore cartStore;
+    @Autowired private CartWriter cartWriter;
 
     public void addToCart(Long userId, Long productId, int quantity) {
-        CartItem item = cartItemRepo.findByUserIdAndProductId(userId, productId)
-                .orElseGet(() -> {
-                    CartItem newItem = new CartItem();
-                    newItem.setUser(userRepo.findById(userId).orElseThrow());
-                    newItem.setProduct(productRepo.findById(productId).orElseThrow());
-                    return newItem;
-                });
-
-        item.setQuantity(quantity);
-        cartItemRepo.save(item);
+        cartStore.add(userId, productId, quantity);
     }
 
     public CartResponseDTO getUserCart(Long userId) {
-        List<CartItem> items = cartItemRepo.findByUserId(userId);
-        String userName = items.isEmpty() ? "" : items.getFirst().getUser().getFullName();
-
-        List<CartItemResponseDTO> itemDTOs = items.stream()
-                .map(i -> new CartItemResponseDTO(
-                        i.getId(),
-                        i.getProduct().getId(),
-                        i.getProduct().getName(),
-                        i.getQuantity(),
-                        i.getProduct().getPrice()
-                ))
-                .toList();
-
-        return new CartResponseDTO(userName, itemDTOs);
+        return cartStore.get(userId);
     }
 
     public void updateCartItem(Long cartItemId, int newQuantity) {
-        CartItem item = cartItemRepo.findById(cartItemId).orElseThrow();
-        item.setQuantity(newQuantity);
-        cartItemRepo.save(item);
+        cartStore.updateQuantity(cartItemId, newQuantity);
     }
 
     public void deleteCartItem(Long cartItemId) {
-        cartItemRepo.deleteById(cartItemId);
+        cartStore.delete(cartItemId);
     }
 
-    @Transactional
     public void clearCart(Long userId) {
-        cartItemRepo.deleteByUserId(userId);
+        cartStore.clear(userId);
     }
 
-    public void syncCart(Long userId, List<CartItem> newItems) {
-        // Xóa giỏ hàng cũ
-        cartItemRepo.deleteByUserId(userId);
-
-        // Thêm mới từng mục từ danh sách truyền vào
-        User user = userRepo.findById(userId).orElseThrow();
-        for (CartItem item : newItems) {
-            Product product = productRepo.findById(item.getProduct().getId()).orElseThrow();
-            CartItem newItem = new CartItem();
-            newItem.setUser(user);
-            newItem.setProduct(product);
-            newItem.setQuantity(item.getQuantity());
-            cartItemRepo.save(newItem);
+    public CartSyncResponseDTO syncCart(Long userId, List<CartItemRequestDTO> newItems) {
+        if (!userRepo.existsById(userId)) {
+            throw new RuntimeException("User không tồn tại");
+        }
+        // Gộp danh sách gửi lên theo sản phẩm (mục sau ghi đè mục trước)
+        Map<Long, Integer> desired = new LinkedHashMap<>();
+        List<Long> rejected = new ArrayList<>();
+        for (CartItemRequestDTO item : newItems) {
+            if (item.getProductId() == null) {
+                continue;
+            }
+            if (item.getQuantity() <= 0) {
+                rejected.add(item.getProductId());
+                desired.remove(item.getProductId());
+            } else {
+                desired.put(item.getProductId(), item.getQuantity());
+            }
         }
+
+        // Đồng bộ ghi thẳng vào DB nên chạy khi đang giữ giỏ của user trong CartStore; thành công thì giỏ bị bỏ khỏi bộ nhớ
+        CartWriter.SyncResult result = cartStore.withEvicted(userId, () -> cartWriter.sync(userId, desired));
+        rejected.addAll(result.rejected());
+        return new CartSyncResponseDTO(result.inserted(), result.updated(), result.deleted(), rejected);
     }
 }
@@ -0,0 +1,500 @@
+package com.example.bikeshop.service;
+
+import com.example.bikeshop.dto.CartItemResponseDTO;
+import com.example.bikeshop.dto.CartResponseDTO;
+import com.example.bikeshop.entity.CartItem;
+import com.example.bikeshop.entity.Product;
+import com.example.bikeshop.entity.User;
+import com.example.bikeshop.exception.InvalidCartItemException;
+import com.example.bikeshop.repository.CartItemRepository;
+import com.example.bikeshop.repository.ProductRepository;
+import com.example.bikeshop.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Giỏ hàng giữ trong bộ nhớ theo userId, ghi trễ (write-behind) xuống cart_item.
+// Thao tác thêm/sửa/xóa chỉ sửa bộ nhớ rồi trả về ngay; CartWriter gộp các thay đổi và ghi theo lô
+// mỗi cart.flush-interval-ms. Chỉ đọc DB khi giỏ chưa có trong bộ nhớ.
+// Dòng mới thêm nhận id âm tạm thời cho tới khi được ghi; id tạm vẫn dùng được sau đó nhờ bảng alias.
+@Component
+public class CartStore {
+    private static final int STRIPES = 64;
+
+    @Autowired
+    private CartItemRepository cartItemRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private CartWriter cartWriter;
+
+    @Autowired
+    private ProductFacetIndex productFacetIndex;
+
+    @Value("${cart.max-carts:10000}")
+    private int maxCarts;
+
+    @Value("${cart.idle-ms:1800000}")
+    private long idleMillis;
+
+    private static final class Line {
+        long id;
+        final Long productId;
+        int quantity;
+        String productName;
+        Double price;
+
+        Line(long id, Long productId, int quantity) {
+            this.id = id;
+            this.productId = productId;
+            this.quantity = quantity;
+        }
+    }
+
+    private static final class Cart {
+        final Long userId;
+        String userName = "";
+        final Map<Long, Line> lines = new LinkedHashMap<>();
+        // id tạm -> id thật sau khi đã ghi
+        final Map<Long, Long> aliases = new HashMap<>();
+        final Set<Long> dirtyProducts = new HashSet<>();
+        final Set<Long> deletedProducts = new HashSet<>();
+        boolean clearAll;
+        // Lần flush nền đã lấy thay đổi của giỏ và đang ghi xuống DB
+        boolean writing;
+        volatile long lastAccess = System.currentTimeMillis();
+
+        Cart(Long userId) {
+            this.userId = userId;
+        }
+
+        boolean isDirty() {
+            return clearAll || !dirtyProducts.isEmpty() || !deletedProducts.isEmpty();
+        }
+
+        Line findLine(long itemId) {
+            long resolved = aliases.getOrDefault(itemId, itemId);
+            for (Line line : lines.values()) {
+                if (line.id == resolved || line.id == itemId) {
+                    return line;
+                }
+            }
+            return null;
+        }
+    }
+
+    private final Map<Long, Cart> carts = new ConcurrentHashMap<>();
+    // id dòng (thật hoặc tạm) -> userId, để sửa/xóa theo id dòng như API hiện tại
+    private final Map<Long, Long> itemOwners = new ConcurrentHashMap<>();
+    private final Object[] stripes = new Object[STRIPES];
+    private final AtomicLong tempIds = new AtomicLong();
+    private final Object flushLock = new Object();
+
+    public CartStore() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    // Kiểm tra ngay khi thêm: nếu để tới lúc flush thì dòng sai bị bỏ âm thầm mà request vẫn trả về thành công
+    public void add(Long userId, Long productId, int quantity) {
+        if (quantity <= 0) {
+            throw new InvalidCartItemException("Số lượng phải lớn hơn 0");
+        }
+        if (!productExists(productId)) {
+            throw new InvalidCartItemException("Không tìm thấy sản phẩm với ID: " + productId);
+        }
+        synchronized (stripe(userId)) {
+            Cart cart = load(userId);
+            Line line = cart.lines.get(productId);
+            if (line == null) {
+                line = new Line(tempIds.decrementAndGet(), productId, quantity);
+                cart.lines.put(productId, line);
+                itemOwners.put(line.id, userId);
+            }
+            line.quantity = quantity;
+            cart.deletedProducts.remove(productId);
+            cart.dirtyProducts.add(productId);
+        }
+    }
+
+    public CartResponseDTO get(Long userId) {
+        synchronized (stripe(userId)) {
+            Cart cart = load(userId);
+            resolveSnapshots(cart);
+            List<CartItemResponseDTO> items = cart.lines.values().stream()
+                    .map(line -> new CartItemResponseDTO(line.id, line.productId, line.productName, line.quantity, line.price))
+                    .toList();
+            return new CartResponseDTO(items.isEmpty() ? "" : cart.userName, items);
+        }
+    }
+
+    public void updateQuantity(Long cartItemId, int quantity) {
+        Long userId = ownerOf(cartItemId);
+        synchronized (stripe(userId)) {
+            Cart cart = load(userId);
+            Line line = cart.findLine(cartItemId);
+            if (line == null) {
+                throw new NoSuchElementException("Không tìm thấy sản phẩm trong giỏ hàng");
+            }
+            line.quantity = quantity;
+            cart.dirtyProducts.add(line.productId);
+        }
+    }
+
+    public void delete(Long cartItemId) {
+        Long userId = itemOwners.get(cartItemId);
+        if (userId == null) {
+            userId = cartItemRepository.findById(cartItemId).map(item -> item.getUser().getId()).orElse(null);
+            if (userId == null) {
+                return;
+            }
+        }
+        synchronized (stripe(userId)) {
+            Cart cart = load(userId);
+            Line line = cart.findLine(cartItemId);
+            if (line != null) {
+                removeLine(cart, line);
+            }
+        }
+    }
+
+    public void clear(Long userId) {
+        synchronized (stripe(userId)) {
+            Cart cart = carts.get(userId);
+            if (cart == null) {
+                // Không cần nạp giỏ cũ: xóa theo user_id khi flush, giỏ trong bộ nhớ là giỏ rỗng
+                cart = new Cart(userId);
+                carts.put(userId, cart);
+            }
+            for (Line line : List.copyOf(cart.lines.values())) {
+                removeLine(cart, line);
+            }
+            cart.deletedProducts.clear();
+            cart.clearAll = true;
+            cart.lastAccess = System.currentTimeMillis();
+        }
+    }
+
+    // Cho các thao tác ghi thẳng toàn bộ giỏ xuống cart_item (đồng bộ giỏ): chỉ giữ khóa của user đó, chờ lần flush nền
+    // đang ghi giỏ này (nếu có) rồi ghi nốt thay đổi còn chờ, sau đó mới chạy action. Action thành công thì bỏ giỏ khỏi
+    // bộ nhớ (lần đọc sau nạp lại từ DB); action lỗi thì giữ nguyên giỏ vì DB vẫn như trước action
+    public <T> T withEvicted(Long userId, Supplier<T> action) {
+        Object stripe = stripe(userId);
+        synchronized (stripe) {
+            Cart cart = carts.get(userId);
+            while (cart != null && cart.writing) {
+                try {
+                    stripe.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Bị gián đoạn khi chờ ghi giỏ hàng", e);
+                }
+                cart = carts.get(userId);
+            }
+            if (cart != null && cart.isDirty()) {
+                List<CartWriter.CartChanges> pending = List.of(takeChanges(cart));
+                try {
+                    applyResult(pending, cartWriter.write(pending));
+                } catch (RuntimeException e) {
+                    requeue(pending);
+                    throw e;
+                }
+            }
+
+            T result = action.get();
+            cart = carts.get(userId);
+            if (cart != null) {
+                evict(cart);
+            }
+            return result;
+        }
+    }
+
+    // Giá/tên sản phẩm thay đổi thì cập nhật bản chụp trong các giỏ đang nạp
+    public void refreshProduct(Product product) {
+        for (Cart cart : carts.values()) {
+            synchronized (stripe(cart.userId)) {
+                Line line = cart.lines.get(product.getId());
+                if (line != null) {
+                    line.productName = product.getName();
+                    line.price = product.getPrice();
+                }
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cart.flush-interval-ms:300}")
+    public void flushDirty() {
+        synchronized (flushLock) {
+            flush(new ArrayList<>(carts.keySet()));
+            evictIdle();
+        }
+    }
+
+    // Tắt ứng dụng thì ghi hết những gì còn trong bộ nhớ
+    @PreDestroy
+    public void flushAll() {
+        synchronized (flushLock) {
+            flush(new ArrayList<>(carts.keySet()));
+        }
+    }
+
+    private void flush(Collection<Long> userIds) {
+        List<CartWriter.CartChanges> changes = new ArrayList<>();
+        List<Cart> writing = new ArrayList<>();
+        for (Long userId : userIds) {
+            synchronized (stripe(userId)) {
+                Cart cart = carts.get(userId);
+                if (cart == null || !cart.isDirty()) {
+                    continue;
+                }
+                changes.add(takeChanges(cart));
+                cart.writing = true;
+                writing.add(cart);
+            }
+        }
+        try {
+            write(changes);
+        } finally {
+            for (Cart cart : writing) {
+                Object stripe = stripe(cart.userId);
+                synchronized (stripe) {
+                    cart.writing = false;
+                    stripe.notifyAll();
+                }
+            }
+        }
+    }
+
+    // Lấy thay đổi chưa ghi của giỏ (gọi khi đang giữ khóa của user) và đánh dấu giỏ sạch
+    private CartWriter.CartChanges takeChanges(Cart cart) {
+        Map<Long, Integer> upserts = new HashMap<>();
+        for (Long productId : cart.dirtyProducts) {
+            Line line = cart.lines.get(productId);
+            if (line != null) {
+                upserts.put(productId, line.quantity);
+            }
+        }
+        CartWriter.CartChanges change = new CartWriter.CartChanges(cart.userId, cart.clearAll, upserts,
+                Set.copyOf(cart.deletedProducts));
+        cart.dirtyProducts.clear();
+        cart.deletedProducts.clear();
+        cart.clearAll = false;
+        return change;
+    }
+
+    private void write(List<CartWriter.CartChanges> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        if (changes.size() == 1) {
+            writeOne(changes.get(0));
+            return;
+        }
+        try {
+            applyResult(changes, cartWriter.write(changes));
+        } catch (RuntimeException e) {
+            // Một giỏ lỗi (ví dụ user vừa bị xóa) không được kéo cả lô rollback theo: ghi lại từng giỏ một
+            for (CartWriter.CartChanges change : changes) {
+                writeOne(change);
+            }
+        }
+    }
+
+    private void writeOne(CartWriter.CartChanges change) {
+        List<CartWriter.CartChanges> changes = List.of(change);
+        try {
+            applyResult(changes, cartWriter.write(changes));
+        } catch (DataIntegrityViolationException e) {
+            // Dữ liệu của giỏ không bao giờ ghi được (user không còn tồn tại): bỏ giỏ thay vì thử lại mãi
+            synchronized (stripe(change.userId())) {
+                Cart cart = carts.get(change.userId());
+                if (cart != null) {
+                    evict(cart);
+                }
+            }
+            System.err.println("Bỏ giỏ hàng của user " + change.userId() + ": " + e.getMessage());
+        } catch (RuntimeException e) {
+            // Lỗi tạm thời thì trả thay đổi về lại giỏ để lần sau ghi tiếp
+            requeue(changes);
+            System.err.println("Không thể ghi giỏ hàng của user " + change.userId() + ": " + e.getMessage());
+        }
+    }
+
+    private void applyResult(List<CartWriter.CartChanges> changes, CartWriter.FlushResult result) {
+        for (CartWriter.CartChanges change : changes) {
+            synchronized (stripe(change.userId())) {
+                Cart cart = carts.get(change.userId());
+                if (cart == null) {
+                    continue;
+                }
+                Map<Long, Long> ids = result.ids().getOrDefault(change.userId(), Map.of());
+                for (Line line : cart.lines.values()) {
+                    Long realId = ids.get(line.productId);
+                    if (line.id < 0 && realId != null) {
+                        cart.aliases.put(line.id, realId);
+                        itemOwners.put(realId, cart.userId);
+                        line.id = realId;
+                    }
+                }
+                for (Long productId : result.rejected().getOrDefault(change.userId(), List.of())) {
+                    Line line = cart.lines.get(productId);
+                    if (line != null && !cart.dirtyProducts.contains(productId)) {
+                        removeLine(cart, line);
+                        cart.deletedProducts.remove(productId);
+                    }
+                }
+            }
+        }
+    }
+
+    private void requeue(List<CartWriter.CartChanges> changes) {
+        for (CartWriter.CartChanges change : changes) {
+            synchronized (stripe(change.userId())) {
+                Cart cart = carts.get(change.userId());
+                if (cart == null) {
+                    continue;
+                }
+                cart.clearAll |= change.clearAll();
+                for (Long productId : change.upserts().keySet()) {
+                    if (cart.lines.containsKey(productId)) {
+                        cart.dirtyProducts.add(productId);
+                    }
+                }
+                for (Long productId : change.deletes()) {
+                    if (!cart.lines.containsKey(productId)) {
+                        cart.deletedProducts.add(productId);
+                    }
+                }
+            }
+        }
+    }
+
+    // Bỏ các giỏ không dùng quá lâu, và giỏ ít dùng nhất khi vượt quá cart.max-carts (chỉ giỏ đã ghi xong)
+    private void evictIdle() {
+        long now = System.currentTimeMillis();
+        List<Cart> candidates = new ArrayList<>();
+        for (Cart cart : carts.values()) {
+            if (now - cart.lastAccess > idleMillis) {
+                evictIfClean(cart);
+            } else {
+                candidates.add(cart);
+            }
+        }
+        int overflow = candidates.size() - maxCarts;
+        if (overflow > 0) {
+            candidates.sort(Comparator.comparingLong(cart -> cart.lastAccess));
+            for (int i = 0; i < overflow; i++) {
+                evictIfClean(candidates.get(i));
+            }
+        }
+    }
+
+    private void evictIfClean(Cart cart) {
+        synchronized (stripe(cart.userId)) {
+            if (!cart.isDirty()) {
+                evict(cart);
+            }
+        }
+    }
+
+    private void evict(Cart cart) {
+        carts.remove(cart.userId);
+        for (Line line : cart.lines.values()) {
+            itemOwners.remove(line.id);
+        }
+        for (Long tempId : cart.aliases.keySet()) {
+            itemOwners.remove(tempId);
+        }
+    }
+
+    // Index facet đã sẵn sàng thì tra trong bộ nhớ, chưa thì hỏi DB theo khóa chính
+    private boolean productExists(Long productId) {
+        if (productId == null) {
+            return false;
+        }
+        return productFacetIndex.isReady() ? productFacetIndex.contains(productId) : productRepository.existsById(productId);
+    }
+
+    private Cart load(Long userId) {
+        Cart cart = carts.get(userId);
+        if (cart == null) {
+            // Như trước khi có CartStore: user không tồn tại thì báo lỗi ngay, không để giỏ của họ làm hỏng lần flush
+            User user = userRepository.findById(userId).orElseThrow();
+            cart = new Cart(userId);
+            cart.userName = user.getFullName() == null ? "" : user.getFullName();
+            List<CartItem> items = cartItemRepository.findByUserId(userId);
+            for (CartItem item : items) {
+                Line line = new Line(item.getId(), item.getProduct().getId(), item.getQuantity());
+                line.productName = item.getProduct().getName();
+                line.price = item.getProduct().getPrice();
+                cart.lines.put(line.productId, line);
+                itemOwners.put(line.id, userId);
+            }
+            carts.put(userId, cart);
+        }
+        cart.lastAccess = System.currentTimeMillis();
+        return cart;
+    }
+
+    // Dòng vừa thêm chưa có tên/giá: lấy tất cả trong một truy vấn khi có người đọc giỏ
+    private void resolveSnapshots(Cart cart) {
+        List<Long> missing = cart.lines.values().stream()
+                .filter(line -> line.productName == null)
+                .map(line -> line.productId)
+                .toList();
+        if (!missing.isEmpty()) {
+            Map<Long, Product> products = new HashMap<>();
+            for (Product product : productRepository.findAllById(missing)) {
+                products.put(product.getId(), product);
+            }
+            for (Long productId : missing) {
+                Product product = products.get(productId);
+                if (product == null) {
+                    removeLine(cart, cart.lines.get(productId));
+                } else {
+                    Line line = cart.lines.get(productId);
+                    line.productName = product.getName();
+                    line.price = product.getPrice();
+                }
+            }
+        }
+        if (cart.userName.isEmpty() && !cart.lines.isEmpty()) {
+            cart.userName = userRepository.findById(cart.userId).map(User::getFullName).orElse("");
+        }
+    }
+
+    private void removeLine(Cart cart, Line line) {
+        cart.lines.remove(line.productId);
+        itemOwners.remove(line.id);
+        cart.dirtyProducts.remove(line.productId);
+        cart.deletedProducts.add(line.productId);
+    }
+
+    private Long ownerOf(Long cartItemId) {
+        Long userId = itemOwners.get(cartItemId);
+        if (userId != null) {
+            return userId;
+        }
+        CartItem item = cartItemRepository.findById(cartItemId).orElseThrow();
+        return item.getUser().getId();
+    }
+
+    private Object stripe(Long userId) {
+        return stripes[Math.floorMod(userId.hashCode(), STRIPES)];
+    }
+}
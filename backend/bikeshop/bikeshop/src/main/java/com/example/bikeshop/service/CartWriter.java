@@ -0,0 +1,152 @@
+package com.example.bikeshop.service;
+
+import com.example.bikeshop.repository.ProductRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Ghi các thay đổi giỏ hàng đã gộp xuống cart_item bằng JDBC batch, trong một transaction
+@Component
+public class CartWriter {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    // Thay đổi của một giỏ hàng từ lần flush trước tới giờ
+    public record CartChanges(Long userId, boolean clearAll, Map<Long, Integer> upserts, Set<Long> deletes) {
+    }
+
+    // rejected: sản phẩm không còn tồn tại; ids: (userId -> productId -> id dòng cart_item) của các dòng vừa thêm
+    public record FlushResult(Map<Long, List<Long>> rejected, Map<Long, Map<Long, Long>> ids) {
+    }
+
+    // rejected: sản phẩm trong desired không còn tồn tại
+    public record SyncResult(int inserted, int updated, int deleted, List<Long> rejected) {
+    }
+
+    // Đưa cart_item của user về đúng danh sách desired (productId -> số lượng) bằng cách so với giỏ hiện tại:
+    // chỉ thêm/sửa/xóa những dòng khác nhau. Khóa các dòng của user để hai lần đồng bộ cùng lúc không chen nhau.
+    // Kiểm tra sản phẩm cùng transaction với lúc ghi
+    @Transactional
+    public SyncResult sync(Long userId, Map<Long, Integer> desired) {
+        List<Long> rejected = new ArrayList<>();
+        if (!desired.isEmpty()) {
+            Set<Long> existing = new HashSet<>(productRepository.findExistingIds(desired.keySet()));
+            for (Iterator<Long> it = desired.keySet().iterator(); it.hasNext(); ) {
+                Long productId = it.next();
+                if (!existing.contains(productId)) {
+                    rejected.add(productId);
+                    it.remove();
+                }
+            }
+        }
+
+        Map<Long, Integer> current = new HashMap<>();
+        jdbcTemplate.query("SELECT product_id, quantity FROM cart_item WHERE user_id = ? FOR UPDATE",
+                rs -> {
+                    current.put(rs.getLong("product_id"), rs.getInt("quantity"));
+                },
+                userId);
+
+        List<Object[]> inserts = new ArrayList<>();
+        List<Object[]> updates = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        desired.forEach((productId, quantity) -> {
+            Integer old = current.get(productId);
+            if (old == null) {
+                inserts.add(new Object[]{userId, productId, quantity});
+            } else if (old.intValue() != quantity) {
+                updates.add(new Object[]{quantity, userId, productId});
+            }
+        });
+        for (Long productId : current.keySet()) {
+            if (!desired.containsKey(productId)) {
+                deletes.add(new Object[]{userId, productId});
+            }
+        }
+
+        if (!deletes.isEmpty()) {
+            jdbcTemplate.batchUpdate("DELETE FROM cart_item WHERE user_id = ? AND product_id = ?", deletes);
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE cart_item SET quantity = ? WHERE user_id = ? AND product_id = ?", updates);
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO cart_item (user_id, product_id, quantity) VALUES (?, ?, ?)", inserts);
+        }
+        return new SyncResult(inserts.size(), updates.size(), deletes.size(), rejected);
+    }
+
+    @Transactional
+    public FlushResult write(List<CartChanges> changes) {
+        List<Object[]> clears = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        List<Object[]> upserts = new ArrayList<>();
+        for (CartChanges cart : changes) {
+            if (cart.clearAll()) {
+                clears.add(new Object[]{cart.userId()});
+            }
+            for (Long productId : cart.deletes()) {
+                deletes.add(new Object[]{cart.userId(), productId});
+            }
+            cart.upserts().forEach((productId, quantity) ->
+                    upserts.add(new Object[]{cart.userId(), quantity, productId}));
+        }
+
+        if (!clears.isEmpty()) {
+            jdbcTemplate.batchUpdate("DELETE FROM cart_item WHERE user_id = ?", clears);
+        }
+        if (!deletes.isEmpty()) {
+            jdbcTemplate.batchUpdate("DELETE FROM cart_item WHERE user_id = ? AND product_id = ?", deletes);
+        }
+
+        Map<Long, List<Long>> rejected = new HashMap<>();
+        Map<Long, Map<Long, Long>> ids = new HashMap<>();
+        if (upserts.isEmpty()) {
+            return new FlushResult(rejected, ids);
+        }
+
+        // Một câu lệnh cho mỗi dòng nhờ khóa duy nhất (user_id, product_id). INSERT ... SELECT từ products:
+        // sản phẩm không còn tồn tại thì không chèn gì thay vì lỗi khóa ngoại
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO cart_item (user_id, quantity, product_id) SELECT ?, ?, p.id FROM products p WHERE p.id = ? " +
+                        "ON DUPLICATE KEY UPDATE quantity = VALUES(quantity)",
+                upserts);
+
+        // Lấy id thật của các dòng để thay cho id tạm đã trả cho client.
+        // Không dựa vào số dòng bị ảnh hưởng: MySQL trả 0 hay 1 cho dòng không đổi tùy cấu hình driver
+        Set<Long> users = new HashSet<>();
+        for (Object[] row : upserts) {
+            users.add((Long) row[0]);
+        }
+        namedParameterJdbcTemplate.query("SELECT id, user_id, product_id FROM cart_item WHERE user_id IN (:users)",
+                Map.of("users", users),
+                rs -> {
+                    ids.computeIfAbsent(rs.getLong("user_id"), k -> new HashMap<>())
+                            .put(rs.getLong("product_id"), rs.getLong("id"));
+                });
+        for (Object[] row : upserts) {
+            Long userId = (Long) row[0];
+            Long productId = (Long) row[2];
+            if (!ids.getOrDefault(userId, Map.of()).containsKey(productId)) {
+                rejected.computeIfAbsent(userId, k -> new ArrayList<>()).add(productId);
+            }
+        }
+        return new FlushResult(rejected, ids);
+    }
+}
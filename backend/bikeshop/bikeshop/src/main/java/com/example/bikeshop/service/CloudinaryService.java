@@ -4,17 +4,20 @@ import com.cloudinary.Cloudinary;
 import com.cloudinary.utils.ObjectUtils;
 import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
 import java.util.Map;
-import java.util.UUID;
 
 @Service
-public class CloudinaryService {
+@ConditionalOnProperty(name = "storage.type", havingValue = "cloudinary", matchIfMissing = true)
+public class CloudinaryService implements BlobStore {
+    // Cloudinary yêu cầu mỗi khúc tối thiểu 5 MB
+    private static final int CHUNK_SIZE = 6 * 1024 * 1024;
 
     private Cloudinary cloudinary;
 
@@ -36,25 +39,24 @@ public class CloudinaryService {
         ));
     }
 
-    public Map upload(MultipartFile multipartFile) throws IOException {
-        File file = convert(multipartFile);
-        try {
-            return cloudinary.uploader().upload(file, ObjectUtils.emptyMap());
-        } finally {
-            file.delete();
-        }
+    // Gửi thẳng từ InputStream theo từng khúc, không chép cả file vào heap hay file tạm
+    @Override
+    public StoredBlob put(String filename, InputStream content) throws IOException {
+        Map<?, ?> result = cloudinary.uploader().uploadLarge(content, ObjectUtils.asMap("resource_type", "image"), CHUNK_SIZE);
+        return new StoredBlob((String) result.get("public_id"), (String) result.get("url"));
     }
 
-    public Map delete(String publicId) throws IOException {
-        return cloudinary.uploader().destroy(publicId, ObjectUtils.emptyMap());
+    @Override
+    public InputStream open(String publicId) throws IOException {
+        String url = cloudinary.url().resourceType("image").generate(publicId);
+        if (url == null) {
+            throw new FileNotFoundException(publicId);
+        }
+        return URI.create(url).toURL().openStream();
     }
 
-    private File convert(MultipartFile multipartFile) throws IOException {
-        String tempFileName = UUID.randomUUID() + "_" + multipartFile.getOriginalFilename();
-        File file = new File(System.getProperty("java.io.tmpdir"), tempFileName);
-        try (FileOutputStream fos = new FileOutputStream(file)) {
-            fos.write(multipartFile.getBytes());
-        }
-        return file;
+    @Override
+    public void delete(String publicId) throws IOException {
+        cloudinary.uploader().destroy(publicId, ObjectUtils.emptyMap());
     }
 }
@@ -0,0 +1,50 @@
+package com.example.bikeshop.service;
+
+import com.example.bikeshop.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+// Mã hóa vị trí (khóa sắp xếp, id) của dòng cuối trang thành token "after" cho phân trang keyset
+public final class CursorCodec {
+    private static final String SEPARATOR = "|";
+
+    public record Cursor(String key, Long id) {
+        public LocalDateTime keyAsDateTime() {
+            try {
+                return LocalDateTime.parse(key);
+            } catch (DateTimeParseException e) {
+                throw new InvalidCursorException("Cursor không hợp lệ");
+            }
+        }
+    }
+
+    private CursorCodec() {
+    }
+
+    public static String encode(Object key, Long id) {
+        String raw = (key == null ? "" : key.toString()) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String encode(Long id) {
+        return encode(null, id);
+    }
+
+    public static Cursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(SEPARATOR);
+            return new Cursor(raw.substring(0, separator), Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new InvalidCursorException("Cursor không hợp lệ");
+        }
+    }
+
+    // Giới hạn kích thước trang để một request không kéo cả bảng về
+    public static int clampSize(int size) {
+        return Math.max(1, Math.min(size, 100));
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.bikeshop.service;
+
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+// Bộ đếm sống cho dashboard: cập nhật khi entity được thêm/xóa và khi đơn vào/ra DELIVERED,
+// được AdminDashboardService đối soát lại với DB định kỳ để sửa sai lệch.
+@Component
+public class DashboardCounters {
+    public record Snapshot(long products, long orders, long users, BigDecimal revenue) {
+    }
+
+    private final LongAdder products = new LongAdder();
+    private final LongAdder orders = new LongAdder();
+    private final LongAdder users = new LongAdder();
+    private final AtomicReference<BigDecimal> revenue = new AtomicReference<>(BigDecimal.ZERO);
+    private volatile boolean warm = false;
+
+    public boolean isWarm() {
+        return warm;
+    }
+
+    public void addProducts(long delta) {
+        products.add(delta);
+    }
+
+    public void addOrders(long delta) {
+        orders.add(delta);
+    }
+
+    public void addUsers(long delta) {
+        users.add(delta);
+    }
+
+    public void addRevenue(BigDecimal delta) {
+        if (delta != null && delta.signum() != 0) {
+            revenue.accumulateAndGet(delta, BigDecimal::add);
+        }
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(products.sum(), orders.sum(), users.sum(), revenue.get());
+    }
+
+    // Ghi đè bằng số liệu vừa đếm từ DB
+    public void reset(Snapshot actual) {
+        set(products, actual.products());
+        set(orders, actual.orders());
+        set(users, actual.users());
+        revenue.set(actual.revenue());
+        warm = true;
+    }
+
+    private void set(LongAdder adder, long value) {
+        adder.add(value - adder.sum());
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.bikeshop.service;
+
+import com.example.bikeshop.entity.Order;
+import com.example.bikeshop.entity.Product;
+import com.example.bikeshop.entity.User;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+// Entity listener của Product, Order, User. Chỉ cộng/trừ bộ đếm sau khi transaction commit,
+// để insert bị rollback không làm lệch số liệu.
+@Component
+public class DashboardCountersListener {
+    @Autowired
+    private ObjectProvider<DashboardCounters> dashboardCounters;
+
+    @PostPersist
+    public void onPersist(Object entity) {
+        apply(entity, 1);
+    }
+
+    @PostRemove
+    public void onRemove(Object entity) {
+        apply(entity, -1);
+    }
+
+    private void apply(Object entity, long delta) {
+        DashboardCounters counters = dashboardCounters.getIfAvailable();
+        if (counters == null) {
+            return;
+        }
+        Runnable update;
+        if (entity instanceof Product) {
+            update = () -> counters.addProducts(delta);
+        } else if (entity instanceof Order) {
+            update = () -> counters.addOrders(delta);
+        } else if (entity instanceof User) {
+            update = () -> counters.addUsers(delta);
+        } else {
+            return;
+        }
+        afterCommit(update);
+    }
+
+    private void afterCommit(Runnable update) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        } else {
+            update.run();
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.bikeshop.service;
+
+import com.example.bikeshop.entity.IdempotencyKey;
+import com.example.bikeshop.entity.Order;
+import com.example.bikeshop.exception.IdempotencyKeyInProgressException;
+import com.example.bikeshop.exception.IdempotencyKeyMismatchException;
+import com.example.bikeshop.exception.InvalidIdempotencyKeyException;
+import com.example.bikeshop.repository.IdempotencyKeyRepository;
+import com.example.bikeshop.repository.OrderRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+// Chống tạo trùng đơn khi client gửi lại POST /api/orders với cùng Idempotency-Key.
+// Kết quả được giữ trong bộ nhớ (giới hạn số lượng, hết hạn theo TTL); bật idempotency.jdbc-enabled
+// để dùng thêm bảng idempotency_keys khi chạy nhiều node.
+@Service
+public class IdempotencyService {
+    private static final int MAX_KEY_LENGTH = 100;
+    private static final long POLL_INTERVAL_MS = 100;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${idempotency.ttl-minutes:1440}")
+    private long ttlMinutes;
+
+    @Value("${idempotency.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${idempotency.jdbc-enabled:false}")
+    private boolean jdbcEnabled;
+
+    @Value("${idempotency.wait-timeout-ms:15000}")
+    private long waitTimeoutMillis;
+
+    // Phải dài hơn thời gian tạo đơn lâu nhất, nếu không node khác sẽ giành khóa khi đơn còn đang tạo
+    @Value("${idempotency.claim-lease-seconds:60}")
+    private long claimLeaseSeconds;
+
+    private record Entry(CompletableFuture<Order> result, String requestHash, long createdAt) {
+    }
+
+    // Giữ thứ tự chèn để bỏ khóa cũ nhất khi vượt quá maxEntries
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    // request là nội dung gửi lên; cùng khóa nhưng nội dung khác thì ném IdempotencyKeyMismatchException (422)
+    public Order execute(Long userId, String key, Object request, Supplier<Order> action) {
+        String scopedKey = userId + ":" + validate(key);
+        String requestHash = hash(request);
+        long now = System.currentTimeMillis();
+        Entry mine = new Entry(new CompletableFuture<>(), requestHash, now);
+        Entry existing;
+        synchronized (entries) {
+            existing = entries.get(scopedKey);
+            if (existing != null && isExpired(existing, now)) {
+                entries.remove(scopedKey);
+                existing = null;
+            }
+            if (existing == null) {
+                entries.put(scopedKey, mine);
+                evictOverflow();
+            }
+        }
+
+        // Request trùng đang chạy song song thì chờ kết quả của request đầu tiên
+        if (existing != null) {
+            if (!existing.requestHash().equals(requestHash)) {
+                throw new IdempotencyKeyMismatchException();
+            }
+            return await(existing.result());
+        }
+
+        try {
+            Order order = jdbcEnabled ? executeClaimed(scopedKey, requestHash, action) : action.get();
+            mine.result().complete(order);
+            return order;
+        } catch (RuntimeException e) {
+            // Request lỗi không được ghi nhớ, client có thể gửi lại với cùng khóa
+            synchronized (entries) {
+                entries.remove(scopedKey, mine);
+            }
+            mine.result().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${idempotency.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            entries.values().removeIf(entry -> isExpired(entry, now));
+        }
+        if (jdbcEnabled) {
+            idempotencyKeyRepository.deleteExpired(LocalDateTime.now().minusMinutes(ttlMinutes));
+        }
+    }
+
+    // Nhiều node: node nào chèn được dòng khóa (hoặc giành lại dòng bỏ dở quá lease) thì xử lý,
+    // các node khác chờ order_id được ghi vào
+    private Order executeClaimed(String scopedKey, String requestHash, Supplier<Order> action) {
+        long deadline = System.currentTimeMillis() + waitTimeoutMillis;
+        while (true) {
+            LocalDateTime claimedAt = now();
+            if (idempotencyKeyRepository.claim(scopedKey, requestHash, claimedAt) == 1) {
+                return runClaimed(scopedKey, claimedAt, action);
+            }
+
+            Optional<IdempotencyKey> claimed = idempotencyKeyRepository.findById(scopedKey);
+            // Dòng tạo trước khi có cột request_hash thì không so được
+            if (claimed.isPresent() && claimed.get().getRequestHash() != null
+                    && !claimed.get().getRequestHash().equals(requestHash)) {
+                throw new IdempotencyKeyMismatchException();
+            }
+            if (claimed.isPresent() && claimed.get().getOrderId() != null) {
+                return orderRepository.findById(claimed.get().getOrderId())
+                        .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng"));
+            }
+            // Node giữ khóa chết giữa chừng (không kịp xóa dòng): hết lease thì giành lại thay vì chặn tới hết TTL
+            if (claimed.isPresent() && idempotencyKeyRepository.reclaim(
+                    scopedKey, claimedAt, claimedAt.minusSeconds(claimLeaseSeconds)) == 1) {
+                return runClaimed(scopedKey, claimedAt, action);
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                throw new IdempotencyKeyInProgressException();
+            }
+            // Dòng khóa bị xóa (node kia lỗi) thì vòng sau sẽ giành lại quyền xử lý
+            sleep(POLL_INTERVAL_MS);
+        }
+    }
+
+    private Order runClaimed(String scopedKey, LocalDateTime claimedAt, Supplier<Order> action) {
+        try {
+            Order order = action.get();
+            idempotencyKeyRepository.complete(scopedKey, order.getId());
+            return order;
+        } catch (RuntimeException e) {
+            idempotencyKeyRepository.release(scopedKey, claimedAt);
+            throw e;
+        }
+    }
+
+    // Cột DATETIME(6) chỉ giữ tới micro giây; cắt bớt để release so khớp đúng claimed_at đã ghi
+    private static LocalDateTime now() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    private Order await(CompletableFuture<Order> result) {
+        try {
+            return result.get(waitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IdempotencyKeyInProgressException();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyKeyInProgressException();
+        }
+    }
+
+    // Băm bản JSON của request đã parse, để khác biệt về khoảng trắng/thứ tự field trong body gốc không tính là khác
+    private String hash(Object request) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(request);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String validate(String key) {
+        String trimmed = key.trim();
+        if (trimmed.isEmpty() || trimmed.length() > MAX_KEY_LENGTH) {
+            throw new InvalidIdempotencyKeyException("Idempotency-Key phải có từ 1 đến " + MAX_KEY_LENGTH + " ký tự");
+        }
+        return trimmed;
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.createdAt() > TimeUnit.MINUTES.toMillis(ttlMinutes);
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyKeyInProgressException();
+        }
+    }
+}
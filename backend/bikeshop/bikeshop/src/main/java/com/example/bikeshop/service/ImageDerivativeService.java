@@ -0,0 +1,371 @@
+package com.example.bikeshop.service;
+
+import com.example.bikeshop.entity.Image;
+import com.example.bikeshop.entity.Product;
+import com.example.bikeshop.repository.ImageRepository;
+import com.example.bikeshop.repository.ProductRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.*;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Pattern;
+
+// Tạo các kích thước nhỏ hơn (thumb / card / zoom) của ảnh sản phẩm để trang danh sách không phải tải ảnh gốc.
+// Cache trên đĩa theo nội dung địa chỉ: {image.derivatives.dir}/{sha256(url gốc)}/{variant}.jpg; URL gốc trên Cloudinary
+// không bao giờ đổi nội dung nên file đã tạo dùng tới khi ảnh gốc bị xóa (BlobDeletionWorker xóa cả thư mục).
+// Việc giải mã/thu nhỏ chạy trên pool riêng (image.derivatives.threads), không giữ luồng request.
+@Service
+public class ImageDerivativeService {
+    public static final String URL_PREFIX = "/api/images/variants/";
+    private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{64}");
+    private static final String SOURCE_FILE = "source.url";
+    // Ảnh gốc không giải mã được (vd. WebP, ImageIO không đọc được): không thử lại, trả thẳng ảnh gốc
+    private static final String FAILED_FILE = "failed";
+
+    public enum Variant {
+        THUMB(160), CARD(480), ZOOM(1600);
+
+        private final int maxSize;
+
+        Variant(int maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        public int maxSize() {
+            return maxSize;
+        }
+
+        public String path() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        public String fileName() {
+            return path() + ".jpg";
+        }
+
+        // null nếu không phải variant hợp lệ
+        public static Variant parse(String value) {
+            for (Variant variant : values()) {
+                if (variant.path().equals(value)) {
+                    return variant;
+                }
+            }
+            return null;
+        }
+    }
+
+    @Autowired
+    private ImageRepository imageRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private final Path root;
+    private final Path staging;
+    private final float quality;
+    private final ExecutorService workers;
+    // Các key đang được tạo, để nhiều request cùng trượt cache không tạo trùng
+    private final Set<String> inProgress = ConcurrentHashMap.newKeySet();
+
+    public ImageDerivativeService(@Value("${image.derivatives.dir:${java.io.tmpdir}/bikeshop-derivatives}") String dir,
+                                  @Value("${image.derivatives.threads:2}") int threads,
+                                  @Value("${image.derivatives.quality:0.8}") float quality) {
+        this.root = Paths.get(dir).toAbsolutePath();
+        this.staging = root.resolve("staging");
+        this.quality = quality;
+        this.workers = Executors.newFixedThreadPool(threads);
+        try {
+            Files.createDirectories(staging);
+        } catch (IOException e) {
+            throw new RuntimeException("Không tạo được thư mục ảnh thu nhỏ " + root, e);
+        }
+    }
+
+    public static String keyOf(String originalUrl) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(originalUrl.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Đường dẫn tương đối tới variant của một ảnh gốc, dùng được trước cả khi file được tạo
+    public static String urlOf(String originalUrl, Variant variant) {
+        return URL_PREFIX + keyOf(originalUrl) + "/" + variant.path();
+    }
+
+    public static boolean isValidKey(String key) {
+        return key != null && KEY_PATTERN.matcher(key).matches();
+    }
+
+    // Gọi ngay sau khi ảnh lên Cloudinary, trong luồng request (file multipart chỉ đọc được đến hết request):
+    // chép file sang thư mục tạm rồi để pool tạo variant từ bản chép, không phải tải lại ảnh gốc
+    public void submit(String originalUrl, MultipartFile file) {
+        String key = keyOf(originalUrl);
+        try {
+            recordSource(key, originalUrl);
+            Path staged = Files.createTempFile(staging, key, ".upload");
+            try (InputStream in = file.getInputStream()) {
+                Files.copy(in, staged, StandardCopyOption.REPLACE_EXISTING);
+            }
+            schedule(key, staged);
+        } catch (IOException e) {
+            // Không chặn việc tải ảnh: lần đầu có người xem, variant sẽ được tạo từ ảnh gốc
+            System.err.println("Không lưu tạm được ảnh " + file.getOriginalFilename() + " để tạo variant: " + e.getMessage());
+        }
+    }
+
+    // File variant nếu đã có, null nếu chưa
+    public Path find(String key, Variant variant) {
+        Path file = root.resolve(key).resolve(variant.fileName());
+        return Files.isRegularFile(file) ? file : null;
+    }
+
+    // URL gốc của một key đã biết (null nếu không biết); đồng thời lên lịch tạo variant nếu chưa có.
+    // Chỉ tải những URL do chính server ghi lại, không nhận URL từ request.
+    public String sourceOf(String key) {
+        Path dir = root.resolve(key);
+        Path source = dir.resolve(SOURCE_FILE);
+        if (!Files.isRegularFile(source)) {
+            return null;
+        }
+        try {
+            String originalUrl = Files.readString(source, StandardCharsets.UTF_8).trim();
+            if (!Files.exists(dir.resolve(FAILED_FILE))) {
+                schedule(key, null);
+            }
+            return originalUrl;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Ảnh gốc đã bị xóa: bỏ cả thư mục variant của nó (kể cả source.url, nên key này không còn được phục vụ)
+    public void delete(String originalUrl) throws IOException {
+        Path dir = root.resolve(keyOf(originalUrl));
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    // Ghi lại URL gốc của mọi ảnh hiện có, để variant của ảnh cũ được tạo dần khi có người xem lần đầu
+    @EventListener(ApplicationReadyEvent.class)
+    public void recordExistingSources() {
+        Set<String> urls = new LinkedHashSet<>();
+        for (Image image : imageRepository.findAll()) {
+            if (image.getImageUrl() != null) {
+                urls.add(image.getImageUrl());
+            }
+        }
+        for (Product product : productRepository.findAll()) {
+            if (product.getImageUrls() != null) {
+                urls.addAll(product.getImageUrls());
+            }
+        }
+        try {
+            workers.execute(() -> {
+                for (String url : urls) {
+                    try {
+                        recordSource(keyOf(url), url);
+                    } catch (IOException e) {
+                        System.err.println("Không ghi được nguồn ảnh " + url + ": " + e.getMessage());
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ignored) {
+            // Đang tắt ứng dụng
+        }
+    }
+
+    private void recordSource(String key, String originalUrl) throws IOException {
+        if (originalUrl.isBlank()) {
+            return;
+        }
+        Path dir = Files.createDirectories(root.resolve(key));
+        Path source = dir.resolve(SOURCE_FILE);
+        if (!Files.exists(source)) {
+            writeAtomically(source, tmp -> Files.writeString(tmp, originalUrl, StandardCharsets.UTF_8));
+        }
+    }
+
+    // staged == null: tải ảnh gốc theo source.url
+    private void schedule(String key, Path staged) {
+        if (!inProgress.add(key)) {
+            deleteQuietly(staged);
+            return;
+        }
+        try {
+            workers.execute(() -> {
+                try {
+                    generate(key, staged);
+                } finally {
+                    inProgress.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inProgress.remove(key);
+            deleteQuietly(staged);
+        }
+    }
+
+    private void generate(String key, Path staged) {
+        Path dir = root.resolve(key);
+        Path input = staged;
+        try {
+            if (input == null) {
+                String originalUrl = Files.readString(dir.resolve(SOURCE_FILE), StandardCharsets.UTF_8).trim();
+                input = Files.createTempFile(staging, key, ".download");
+                try (InputStream in = URI.create(originalUrl).toURL().openStream()) {
+                    Files.copy(in, input, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            BufferedImage image = decode(input, Variant.ZOOM.maxSize());
+            if (image == null) {
+                writeAtomically(dir.resolve(FAILED_FILE), tmp -> Files.writeString(tmp, ""));
+                return;
+            }
+            // Thu nhỏ dần từ variant lớn xuống variant nhỏ, mỗi lần từ kết quả trước đó
+            Variant[] variants = Variant.values();
+            for (int i = variants.length - 1; i >= 0; i--) {
+                image = scaleDown(image, variants[i].maxSize());
+                BufferedImage output = image;
+                writeAtomically(dir.resolve(variants[i].fileName()), tmp -> writeJpeg(output, tmp));
+            }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Không tạo được variant cho ảnh " + key + ": " + e.getMessage());
+        } finally {
+            deleteQuietly(input);
+        }
+    }
+
+    // Giải mã với subsampling của ImageIO để ảnh gốc lớn không phải giải mã hết điểm ảnh
+    private BufferedImage decode(Path file, int targetSize) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file.toFile())) {
+            if (in == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int largest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, largest / targetSize);
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Thu về cạnh dài nhất = maxSize (không phóng to), nền trắng cho ảnh có alpha vì JPEG không có kênh alpha
+    static BufferedImage scaleDown(BufferedImage source, int maxSize) {
+        int largest = Math.max(source.getWidth(), source.getHeight());
+        double ratio = largest > maxSize ? (double) maxSize / largest : 1.0;
+        int width = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+        BufferedImage current = source;
+        // Giảm từng nửa một để bilinear không bị răng cưa khi thu nhỏ nhiều lần
+        while (current.getWidth() / 2 >= width && current.getHeight() / 2 >= height) {
+            current = draw(current, current.getWidth() / 2, current.getHeight() / 2);
+        }
+        if (current.getWidth() != width || current.getHeight() != height || current.getType() != BufferedImage.TYPE_INT_RGB) {
+            current = draw(current, width, height);
+        }
+        return current;
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height) {
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = target.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, width, height);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return target;
+    }
+
+    // JPEG progressive: trình duyệt hiện ảnh mờ trước rồi nét dần, và thường nhỏ hơn baseline vài phần trăm
+    private void writeJpeg(BufferedImage image, Path file) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file.toFile())) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private interface FileWriter {
+        void write(Path file) throws IOException;
+    }
+
+    // Ghi ra file tạm cùng thư mục rồi đổi tên, để request đang đọc không bao giờ thấy file ghi dở
+    private void writeAtomically(Path target, FileWriter writer) throws IOException {
+        Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            writer.write(tmp);
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            deleteQuietly(tmp);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // Chỉ là file tạm
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+}
@@ -1,14 +1,17 @@
 package com.example.bikeshop.service;
 
 import com.example.bikeshop.entity.Image;
+import com.example.bikeshop.entity.Product;
 import com.example.bikeshop.repository.ImageRepository;
 import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -17,6 +20,15 @@ public class ImageService {
     @Autowired
     ImageRepository imageRepository;
 
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    ProductService productService;
+
+    @Autowired
+    BlobDeletionQueue blobDeletionQueue;
+
     public List<Image> list() {
         return imageRepository.findByOrderById();
     }
@@ -29,6 +41,143 @@ public class ImageService {
         imageRepository.save(image);
     }
 
+    // hash -> một ảnh đã lưu có nội dung đó (các dòng cùng hash dùng chung một file)
+    public Map<String, Image> findByContentHashes(Collection<String> hashes) {
+        if (hashes.isEmpty()) {
+            return Map.of();
+        }
+        return imageRepository.findByContentHashIn(new HashSet<>(hashes)).stream()
+                .collect(Collectors.toMap(Image::getContentHash, Function.identity(), (first, second) -> first));
+    }
+
+    // Mỗi dòng image là một tham chiếu của một sản phẩm tới một file (public_id); file dùng chung giữa nhiều sản phẩm
+    // có nhiều dòng. Gắn các ảnh của một lượt tải lên vào sản phẩm trong một transaction: mỗi ảnh thêm một dòng bằng
+    // một JDBC batch và một URL vào imageUrls. Ảnh dùng lại (đã có id) phải còn dòng nào đó trỏ tới file, dòng đó được
+    // khóa để lần bỏ tham chiếu cuối không xếp file vào hàng đợi xóa trong lúc mình đang gắn.
+    public void attachToProduct(Product product, List<Image> images) {
+        Set<String> reused = new LinkedHashSet<>();
+        for (Image image : images) {
+            if (image.getId() != null && image.getPublicId() != null) {
+                reused.add(image.getPublicId());
+            }
+        }
+        for (String publicId : reused) {
+            if (!lockReference(publicId)) {
+                throw new RuntimeException("Ảnh trùng vừa bị xóa, vui lòng tải lên lại");
+            }
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO image (name, image_url, public_id, product_id, content_hash) " +
+                        "VALUES (?, ?, ?, ?, ?)",
+                images, images.size(), (ps, image) -> {
+                    ps.setString(1, image.getName());
+                    ps.setString(2, image.getImageUrl());
+                    ps.setString(3, image.getPublicId());
+                    ps.setObject(4, product.getId());
+                    ps.setString(5, image.getContentHash());
+                });
+
+        List<String> imageUrls = product.getImageUrls() != null ? new ArrayList<>(product.getImageUrls()) : new ArrayList<>();
+        for (Image image : images) {
+            imageUrls.add(image.getImageUrl());
+        }
+        product.setImageUrls(imageUrls);
+        productService.saveEntity(product);
+    }
+
+    // imageUrls của sản phẩm đổi từ oldUrls sang newUrls (sửa sản phẩm): URL bị bỏ thì xóa một dòng của sản phẩm cho
+    // URL đó, URL thêm vào mà là ảnh đã lưu thì thêm một dòng trỏ tới cùng file. URL ngoài (không có dòng nào) bỏ qua
+    public void syncProductImages(Product product, List<String> oldUrls, List<String> newUrls) {
+        Map<String, Integer> delta = new LinkedHashMap<>();
+        for (String url : newUrls != null ? newUrls : List.<String>of()) {
+            delta.merge(url, 1, Integer::sum);
+        }
+        for (String url : oldUrls != null ? oldUrls : List.<String>of()) {
+            delta.merge(url, -1, Integer::sum);
+        }
+        delta.forEach((url, count) -> {
+            for (int i = 0; i < -count; i++) {
+                List<Image> rows = jdbcTemplate.query(
+                        "SELECT id, public_id FROM image WHERE product_id = ? AND image_url = ? LIMIT 1",
+                        (rs, row) -> {
+                            Image image = new Image(null, url, rs.getString("public_id"));
+                            image.setId(rs.getLong("id"));
+                            return image;
+                        }, product.getId(), url);
+                rows.forEach(this::release);
+            }
+            for (int i = 0; i < count; i++) {
+                List<Image> templates = jdbcTemplate.query(
+                        "SELECT name, public_id, content_hash FROM image WHERE image_url = ? LIMIT 1 FOR UPDATE",
+                        (rs, row) -> {
+                            Image image = new Image(rs.getString("name"), url, rs.getString("public_id"));
+                            image.setContentHash(rs.getString("content_hash"));
+                            return image;
+                        }, url);
+                if (!templates.isEmpty()) {
+                    Image image = templates.get(0);
+                    jdbcTemplate.update("INSERT INTO image (name, image_url, public_id, product_id, content_hash) " +
+                                    "VALUES (?, ?, ?, ?, ?)",
+                            image.getName(), url, image.getPublicId(), product.getId(), image.getContentHash());
+                }
+            }
+        });
+    }
+
+    // Xóa một ảnh khỏi sản phẩm đang dùng nó (bỏ URL khỏi imageUrls) rồi bỏ tham chiếu; false nếu không có ảnh
+    public boolean removeImage(int id) {
+        Optional<Image> found = imageRepository.findById(id);
+        if (found.isEmpty()) {
+            return false;
+        }
+        Image image = found.get();
+        Product product = image.getProduct();
+        if (product != null && product.getImageUrls() != null) {
+            List<String> imageUrls = new ArrayList<>(product.getImageUrls());
+            if (imageUrls.remove(image.getImageUrl())) {
+                product.setImageUrls(imageUrls);
+                productService.saveEntity(product);
+            }
+        }
+        release(image);
+        return true;
+    }
+
+    // Bỏ một tham chiếu (xóa dòng). Không còn dòng nào trỏ tới file thì xếp file vào hàng đợi xóa trong cùng
+    // transaction; trả về true trong trường hợp đó
+    public boolean release(Image image) {
+        if (jdbcTemplate.update("DELETE FROM image WHERE id = ?", image.getId()) == 0) {
+            return false;
+        }
+        return releaseBlob(image.getPublicId(), image.getImageUrl());
+    }
+
+    // Sản phẩm sắp bị xóa: xóa mọi dòng của sản phẩm, file không còn ai dùng thì xếp vào hàng đợi xóa
+    public void releaseForProduct(Product product) {
+        Map<String, String> urls = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT public_id, image_url FROM image WHERE product_id = ? AND public_id IS NOT NULL",
+                rs -> {
+                    urls.putIfAbsent(rs.getString("public_id"), rs.getString("image_url"));
+                },
+                product.getId());
+        jdbcTemplate.update("DELETE FROM image WHERE product_id = ?", product.getId());
+        urls.forEach(this::releaseBlob);
+    }
+
+    // Cùng với file, ảnh thu nhỏ (theo URL gốc) cũng được xếp vào hàng đợi xóa
+    private boolean releaseBlob(String publicId, String imageUrl) {
+        if (publicId == null || lockReference(publicId)) {
+            return false;
+        }
+        blobDeletionQueue.enqueue(publicId, imageUrl);
+        return true;
+    }
+
+    // Đọc có khóa (thấy cả dòng vừa commit): còn dòng nào trỏ tới file không
+    private boolean lockReference(String publicId) {
+        return !jdbcTemplate.queryForList("SELECT id FROM image WHERE public_id = ? LIMIT 1 FOR UPDATE",
+                Long.class, publicId).isEmpty();
+    }
+
     public void delete(int id) {
         imageRepository.deleteById(id);
     }
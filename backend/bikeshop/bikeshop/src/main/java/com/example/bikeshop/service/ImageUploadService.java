@@ -0,0 +1,157 @@
+package com.example.bikeshop.service;
+
+import com.example.bikeshop.entity.Image;
+import com.example.bikeshop.entity.Product;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Tải ảnh sản phẩm lên BlobStore (Cloudinary hoặc backend chọn theo storage.type): các file của một request được tải
+// song song trên pool giới hạn (image.upload.parallelism luồng), nên thời gian chờ xấp xỉ file chậm nhất thay vì tổng các file.
+// File trùng nội dung (SHA-256) với ảnh đã lưu thì dùng lại file đó (thêm một dòng image trỏ tới cùng public_id)
+// thay vì tải lên lần nữa. Xong hết mới lưu các dòng Image một lượt và cập nhật Product.imageUrls một lần, rồi giao
+// cho ImageDerivativeService tạo ảnh thu nhỏ.
+@Service
+public class ImageUploadService {
+
+    @Autowired
+    private BlobStore blobStore;
+
+    @Autowired
+    private ImageService imageService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ImageValidator imageValidator;
+
+    @Autowired
+    private ImageDerivativeService derivativeService;
+
+    private final ExecutorService uploadExecutor;
+
+    public ImageUploadService(@Value("${image.upload.parallelism:6}") int parallelism) {
+        this.uploadExecutor = Executors.newFixedThreadPool(parallelism);
+    }
+
+    // Trả về URL các ảnh theo đúng thứ tự file gửi lên, đã nối vào cuối imageUrls của sản phẩm
+    public List<String> uploadForProduct(Product product, MultipartFile[] files) {
+        for (MultipartFile file : files) {
+            imageValidator.validate(file);
+        }
+
+        // Băm trước (đọc file tạm trên đĩa, rẻ hơn nhiều so với một lượt tải lên) để file trùng nội dung không phải tải lại
+        List<CompletableFuture<String>> hashing = new ArrayList<>();
+        for (MultipartFile file : files) {
+            hashing.add(CompletableFuture.supplyAsync(() -> hash(file), uploadExecutor));
+        }
+        List<String> hashes = new ArrayList<>();
+        for (CompletableFuture<String> future : hashing) {
+            try {
+                hashes.add(future.join());
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        // Mỗi nội dung mới chỉ tải lên một lần, kể cả khi cùng một file được gửi nhiều lần trong request
+        Map<String, Image> existing = imageService.findByContentHashes(hashes);
+        Map<String, CompletableFuture<Image>> uploads = new LinkedHashMap<>();
+        for (int i = 0; i < files.length; i++) {
+            MultipartFile file = files[i];
+            String hash = hashes.get(i);
+            if (!existing.containsKey(hash) && !uploads.containsKey(hash)) {
+                uploads.put(hash, CompletableFuture.supplyAsync(() -> upload(file, hash), uploadExecutor));
+            }
+        }
+
+        Map<String, Image> uploaded = new LinkedHashMap<>();
+        RuntimeException failure = null;
+        for (Map.Entry<String, CompletableFuture<Image>> entry : uploads.entrySet()) {
+            try {
+                uploaded.put(entry.getKey(), entry.getValue().join());
+            } catch (CompletionException e) {
+                failure = e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        if (failure != null) {
+            // Một file lỗi thì bỏ cả lượt: xóa các ảnh đã lưu để không bị mồ côi
+            deleteUploaded(uploaded.values());
+            throw failure;
+        }
+
+        List<Image> images = new ArrayList<>();
+        for (String hash : hashes) {
+            images.add(existing.containsKey(hash) ? existing.get(hash) : uploaded.get(hash));
+        }
+        try {
+            imageService.attachToProduct(product, images);
+        } catch (RuntimeException e) {
+            deleteUploaded(uploaded.values());
+            throw e;
+        }
+
+        List<String> urls = images.stream().map(Image::getImageUrl).toList();
+        // Ảnh thu nhỏ tạo ở nền từ chính file vừa gửi lên; ảnh trùng đã có sẵn
+        Set<String> submitted = new HashSet<>();
+        for (int i = 0; i < files.length; i++) {
+            String hash = hashes.get(i);
+            if (uploaded.containsKey(hash) && submitted.add(hash)) {
+                derivativeService.submit(urls.get(i), files[i]);
+            }
+        }
+        return urls;
+    }
+
+    private String hash(MultipartFile file) {
+        try (DigestInputStream in = new DigestInputStream(file.getInputStream(), MessageDigest.getInstance("SHA-256"))) {
+            in.transferTo(OutputStream.nullOutputStream());
+            return HexFormat.of().formatHex(in.getMessageDigest().digest());
+        } catch (IOException e) {
+            throw new RuntimeException("Không đọc được ảnh: " + file.getOriginalFilename(), e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Image upload(MultipartFile file, String hash) {
+        try (InputStream in = file.getInputStream()) {
+            BlobStore.StoredBlob blob = blobStore.put(file.getOriginalFilename(), in);
+            Image image = new Image(file.getOriginalFilename(), blob.url(), blob.id());
+            image.setContentHash(hash);
+            return image;
+        } catch (IOException e) {
+            throw new RuntimeException("Không thể tải ảnh lên: " + file.getOriginalFilename(), e);
+        }
+    }
+
+    private void deleteUploaded(Collection<Image> images) {
+        for (Image image : images) {
+            try {
+                blobStore.delete(image.getPublicId());
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Không xóa được ảnh " + image.getPublicId() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        uploadExecutor.shutdown();
+    }
+}
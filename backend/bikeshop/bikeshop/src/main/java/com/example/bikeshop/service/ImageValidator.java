@@ -0,0 +1,158 @@
+package com.example.bikeshop.service;
+
+import com.example.bikeshop.exception.InvalidImageException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.*;
+
+// Kiểm tra file ảnh chỉ bằng phần đầu file (magic bytes + kích thước trong header), không giải mã điểm ảnh.
+// Hỗ trợ JPEG (SOF), PNG (IHDR), GIF và WebP (VP8 / VP8L / VP8X). Bộ nhớ dùng là hằng số bất kể dung lượng file;
+// giới hạn chiều rộng/cao/số điểm ảnh để chặn "bom giải nén" (file nhỏ nhưng khai báo kích thước khổng lồ).
+@Component
+public class ImageValidator {
+    private static final int HEADER_BYTES = 30;
+    // JPEG có thể có EXIF/ICC lớn trước SOF; đọc quá chừng này mà chưa thấy SOF thì coi là không hợp lệ
+    private static final long MAX_JPEG_SCAN_BYTES = 2 * 1024 * 1024;
+
+    public record ImageInfo(String format, int width, int height) {
+    }
+
+    private final int maxWidth;
+    private final int maxHeight;
+    private final long maxPixels;
+
+    public ImageValidator(@Value("${image.validation.max-width:12000}") int maxWidth,
+                          @Value("${image.validation.max-height:12000}") int maxHeight,
+                          @Value("${image.validation.max-pixels:50000000}") long maxPixels) {
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+        this.maxPixels = maxPixels;
+    }
+
+    public ImageInfo validate(MultipartFile file) {
+        ImageInfo info;
+        try (InputStream in = file.getInputStream()) {
+            info = readHeader(in);
+        } catch (IOException e) {
+            throw new InvalidImageException("Không đọc được file " + file.getOriginalFilename());
+        }
+        if (info == null || info.width() <= 0 || info.height() <= 0) {
+            throw new InvalidImageException("File không phải ảnh hợp lệ: " + file.getOriginalFilename());
+        }
+        if (info.width() > maxWidth || info.height() > maxHeight || (long) info.width() * info.height() > maxPixels) {
+            throw new InvalidImageException("Ảnh " + file.getOriginalFilename() + " quá lớn (" +
+                    info.width() + "x" + info.height() + ")");
+        }
+        return info;
+    }
+
+    // null nếu không nhận ra định dạng
+    ImageInfo readHeader(InputStream in) throws IOException {
+        byte[] h = in.readNBytes(HEADER_BYTES);
+        if (h.length >= 4 && u8(h, 0) == 0xFF && u8(h, 1) == 0xD8) {
+            InputStream rest = new SequenceInputStream(new ByteArrayInputStream(h, 2, h.length - 2), in);
+            return readJpeg(new DataInputStream(new BufferedInputStream(rest)));
+        }
+        if (h.length >= 24 && startsWith(h, 0, new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'})
+                && startsWith(h, 12, "IHDR".getBytes())) {
+            return new ImageInfo("png", be32(h, 16), be32(h, 20));
+        }
+        if (h.length >= 10 && (startsWith(h, 0, "GIF87a".getBytes()) || startsWith(h, 0, "GIF89a".getBytes()))) {
+            return new ImageInfo("gif", le16(h, 6), le16(h, 8));
+        }
+        if (h.length >= 30 && startsWith(h, 0, "RIFF".getBytes()) && startsWith(h, 8, "WEBP".getBytes())) {
+            return readWebp(h);
+        }
+        return null;
+    }
+
+    private ImageInfo readWebp(byte[] h) {
+        if (startsWith(h, 12, "VP8 ".getBytes())) {
+            // Khung key frame: 3 byte frame tag, start code 9D 01 2A, rồi rộng/cao 14 bit
+            if (u8(h, 23) != 0x9D || u8(h, 24) != 0x01 || u8(h, 25) != 0x2A) {
+                return null;
+            }
+            return new ImageInfo("webp", le16(h, 26) & 0x3FFF, le16(h, 28) & 0x3FFF);
+        }
+        if (startsWith(h, 12, "VP8L".getBytes())) {
+            if (u8(h, 20) != 0x2F) {
+                return null;
+            }
+            int bits = u8(h, 21) | u8(h, 22) << 8 | u8(h, 23) << 16 | u8(h, 24) << 24;
+            return new ImageInfo("webp", (bits & 0x3FFF) + 1, ((bits >>> 14) & 0x3FFF) + 1);
+        }
+        if (startsWith(h, 12, "VP8X".getBytes())) {
+            return new ImageInfo("webp", le24(h, 24) + 1, le24(h, 27) + 1);
+        }
+        return null;
+    }
+
+    // Duyệt các segment (bỏ qua nội dung bằng skip) tới marker SOF chứa kích thước ảnh
+    private ImageInfo readJpeg(DataInputStream in) throws IOException {
+        long scanned = 0;
+        while (scanned < MAX_JPEG_SCAN_BYTES) {
+            int b = in.read();
+            if (b != 0xFF) {
+                return null;
+            }
+            int marker;
+            do {
+                marker = in.read();
+            } while (marker == 0xFF);
+            if (marker < 0 || marker == 0xD9 || marker == 0xDA) {
+                // Hết file hoặc tới dữ liệu ảnh mà chưa thấy SOF
+                return null;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+                continue;
+            }
+            int length = in.readUnsignedShort();
+            if (length < 2) {
+                return null;
+            }
+            if (isStartOfFrame(marker)) {
+                in.readUnsignedByte(); // độ sâu bit
+                int height = in.readUnsignedShort();
+                int width = in.readUnsignedShort();
+                return new ImageInfo("jpeg", width, height);
+            }
+            in.skipNBytes(length - 2);
+            scanned += length + 2;
+        }
+        return null;
+    }
+
+    private static boolean isStartOfFrame(int marker) {
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
+    }
+
+    private static boolean startsWith(byte[] data, int offset, byte[] prefix) {
+        if (data.length < offset + prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[offset + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int u8(byte[] data, int offset) {
+        return data[offset] & 0xFF;
+    }
+
+    private static int le16(byte[] data, int offset) {
+        return u8(data, offset) | u8(data, offset + 1) << 8;
+    }
+
+    private static int le24(byte[] data, int offset) {
+        return le16(data, offset) | u8(data, offset + 2) << 16;
+    }
+
+    private static int be32(byte[] data, int offset) {
+        return u8(data, offset) << 24 | u8(data, offset + 1) << 16 | u8(data, offset + 2) << 8 | u8(data, offset + 3);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.bikeshop.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Giữ file trong heap, mất khi tắt ứng dụng. Chỉ dùng cho test và đo tải các API ảnh không cần mạng.
+@Service
+@ConditionalOnProperty(name = "storage.type", havingValue = "memory")
+public class InMemoryBlobStore implements BlobStore {
+
+    private final Map<String, byte[]> blobs = new ConcurrentHashMap<>();
+    private final String baseUrl;
+
+    public InMemoryBlobStore(@Value("${storage.public-base-url:http://localhost:8081/api/blobs/}") String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    @Override
+    public StoredBlob put(String filename, InputStream content) throws IOException {
+        String id = BlobIds.newId(filename);
+        blobs.put(id, content.readAllBytes());
+        return new StoredBlob(id, baseUrl + id);
+    }
+
+    @Override
+    public InputStream open(String id) throws IOException {
+        byte[] data = blobs.get(id);
+        if (data == null) {
+            throw new FileNotFoundException(id);
+        }
+        return new ByteArrayInputStream(data);
+    }
+
+    @Override
+    public void delete(String id) {
+        blobs.remove(id);
+    }
+
+    public int size() {
+        return blobs.size();
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.bikeshop.service;
+
+import com.example.bikeshop.entity.Product;
+import com.example.bikeshop.exception.InsufficientStockException;
+import com.example.bikeshop.repository.ProductRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+@Service
+public class InventoryService {
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    // Trừ kho cho cả đơn hàng bằng UPDATE có điều kiện (quantity >= ?), nên không bao giờ bán quá số lượng.
+    // Một dòng không đủ hàng thì ném lỗi để rollback toàn bộ, kể cả các dòng đã trừ trước đó.
+    @Transactional
+    public void reserve(Map<Long, Integer> quantities) {
+        // Luôn cập nhật theo thứ tự id để hai đơn nhiều sản phẩm chạy song song không deadlock
+        for (Map.Entry<Long, Integer> entry : new TreeMap<>(quantities).entrySet()) {
+            if (entry.getValue() <= 0) {
+                continue;
+            }
+            int updated = productRepository.decrementStock(entry.getKey(), entry.getValue());
+            if (updated == 0) {
+                throw new InsufficientStockException(entry.getKey());
+            }
+            refreshIfLoaded(entry.getKey());
+        }
+    }
+
+    // Trả lại hàng vào kho (đơn bị hủy/xóa hoặc giảm số lượng khi sửa đơn)
+    @Transactional
+    public void release(Map<Long, Integer> quantities) {
+        for (Map.Entry<Long, Integer> entry : new TreeMap<>(quantities).entrySet()) {
+            if (entry.getValue() > 0) {
+                productRepository.incrementStock(entry.getKey(), entry.getValue());
+                refreshIfLoaded(entry.getKey());
+            }
+        }
+    }
+
+    // UPDATE chạy thẳng trên DB, không qua persistence context: Product đã nạp trong transaction (ví dụ sản phẩm của
+    // đơn đang tạo/sửa) được đọc lại, để không trả về số lượng cũ và không ghi đè số lượng cũ nếu sau đó bị flush.
+    // Không dùng clearAutomatically vì sẽ tách cả Order mà nơi gọi còn đang sửa
+    private void refreshIfLoaded(Long productId) {
+        SessionImplementor session = entityManager.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMappingMetamodel().getEntityDescriptor(Product.class);
+        Object loaded = session.getPersistenceContextInternal().getEntity(session.generateEntityKey(productId, persister));
+        if (loaded != null) {
+            entityManager.refresh(loaded);
+        }
+    }
+}
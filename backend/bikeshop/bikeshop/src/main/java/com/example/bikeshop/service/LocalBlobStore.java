@@ -0,0 +1,67 @@
+package com.example.bikeshop.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.*;
+
+// Lưu file trong storage.local.dir, chia thư mục theo 2 + 2 ký tự đầu của id (ab/cd/abcd...) để mỗi thư mục không quá nhiều file.
+// Ghi ra file tạm rồi đổi tên nguyên tử, nên không ai đọc được file ghi dở. File được phục vụ qua /api/blobs/{id}.
+@Service
+@ConditionalOnProperty(name = "storage.type", havingValue = "local")
+public class LocalBlobStore implements BlobStore {
+
+    private final Path root;
+    private final Path tmp;
+    private final String baseUrl;
+
+    public LocalBlobStore(@Value("${storage.local.dir:${java.io.tmpdir}/bikeshop-blobs}") String dir,
+                          @Value("${storage.public-base-url:http://localhost:8081/api/blobs/}") String baseUrl) {
+        this.root = Paths.get(dir).toAbsolutePath();
+        this.tmp = root.resolve("tmp");
+        this.baseUrl = baseUrl;
+        try {
+            Files.createDirectories(tmp);
+        } catch (IOException e) {
+            throw new RuntimeException("Không tạo được thư mục lưu ảnh " + root, e);
+        }
+    }
+
+    @Override
+    public StoredBlob put(String filename, InputStream content) throws IOException {
+        String id = BlobIds.newId(filename);
+        Path target = pathOf(id);
+        Files.createDirectories(target.getParent());
+        Path partial = Files.createTempFile(tmp, id, ".part");
+        try {
+            Files.copy(content, partial, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+        return new StoredBlob(id, baseUrl + id);
+    }
+
+    @Override
+    public InputStream open(String id) throws IOException {
+        if (!BlobIds.isValid(id)) {
+            throw new FileNotFoundException(id);
+        }
+        return Files.newInputStream(pathOf(id));
+    }
+
+    @Override
+    public void delete(String id) throws IOException {
+        if (BlobIds.isValid(id)) {
+            Files.deleteIfExists(pathOf(id));
+        }
+    }
+
+    Path pathOf(String id) {
+        return root.resolve(id.substring(0, 2)).resolve(id.substring(2, 4)).resolve(id);
+    }
+}
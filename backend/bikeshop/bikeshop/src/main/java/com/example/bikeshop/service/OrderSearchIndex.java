@@ -0,0 +1,326 @@
+package com.example.bikeshop.service;
+
+import com.example.bikeshop.entity.Order;
+import com.example.bikeshop.entity.OrderStatus;
+import com.example.bikeshop.repository.OrderRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Index tìm kiếm đơn hàng cho trang quản trị, thay cho LIKE '%kw%' trên bảng orders.
+// - Trigram trên tên khách hàng (đã bỏ dấu) và số điện thoại người nhận, kiểm tra lại bằng contains
+// - Mã đơn: khớp chính xác hoặc theo tiền tố
+// - BitSet theo trạng thái, đánh chỉ số bằng chính id đơn, nên kết quả duyệt ngược từ id lớn = đơn mới nhất
+@Component
+public class OrderSearchIndex {
+    private static final int GRAM = 3;
+    private static final String NAME_PREFIX = "n:";
+    private static final String PHONE_PREFIX = "p:";
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    private record Doc(String name, String phone, OrderStatus status) {
+    }
+
+    public record SearchResult(List<Long> orderIds, long total) {
+    }
+
+    private final Map<Integer, Doc> docs = new HashMap<>();
+    // trigram -> danh sách id đơn đã sắp xếp tăng dần
+    private final Map<String, IntPostings> grams = new HashMap<>();
+    private final Map<OrderStatus, BitSet> byStatus = new EnumMap<>(OrderStatus.class);
+    private final BitSet live = new BitSet();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Thay đổi đến trong lúc đang dựng lại (khác null khi đang dựng), giữ dưới write lock
+    private List<Runnable> pendingChanges;
+    private volatile boolean ready = false;
+
+    // Đọc dữ liệu từ DB không giữ lock; thay đổi commit trong lúc đó được ghi lại và áp lại lên bản dựng mới,
+    // nếu không clear() sẽ xóa mất chúng (put/delete/đổi trạng thái áp lại nhiều lần vẫn cho cùng kết quả)
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        write(() -> pendingChanges = new ArrayList<>());
+        List<Object[]> rows;
+        try {
+            rows = orderRepository.findSearchDocuments();
+        } catch (RuntimeException e) {
+            write(() -> pendingChanges = null);
+            throw e;
+        }
+        write(() -> {
+            docs.clear();
+            grams.clear();
+            byStatus.clear();
+            live.clear();
+            for (Object[] row : rows) {
+                put(Math.toIntExact((Long) row[0]), (String) row[1], (String) row[3], (OrderStatus) row[2]);
+            }
+            List<Runnable> changes = pendingChanges;
+            pendingChanges = null;
+            changes.forEach(Runnable::run);
+            ready = true;
+        });
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // Các thay đổi chỉ áp vào index sau khi transaction commit
+    public void index(Order order) {
+        if (order == null || order.getId() == null) {
+            return;
+        }
+        int id = Math.toIntExact(order.getId());
+        String name = order.getCustomerName();
+        String phone = order.getShippingInfo() != null ? order.getShippingInfo().getPhone() : null;
+        OrderStatus status = order.getStatus();
+        afterCommit(() -> apply(() -> put(id, name, phone, status)));
+    }
+
+    public void updateStatus(Collection<Long> orderIds, OrderStatus status) {
+        List<Long> ids = List.copyOf(orderIds);
+        afterCommit(() -> apply(() -> {
+            for (Long orderId : ids) {
+                Doc doc = docs.get(Math.toIntExact(orderId));
+                if (doc != null) {
+                    put(Math.toIntExact(orderId), doc.name(), doc.phone(), status);
+                }
+            }
+        }));
+    }
+
+    public void remove(Long orderId) {
+        int id = Math.toIntExact(orderId);
+        afterCommit(() -> apply(() -> delete(id)));
+    }
+
+    public SearchResult search(String keyword, OrderStatus status, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            BitSet matches = matchKeyword(keyword);
+            if (status != null) {
+                matches.and(byStatus.getOrDefault(status, new BitSet()));
+            }
+
+            List<Long> page = new ArrayList<>();
+            int skipped = 0;
+            for (int id = matches.length() - 1; id >= 0 && page.size() < limit; id = matches.previousSetBit(id - 1)) {
+                if (skipped++ >= offset) {
+                    page.add((long) id);
+                }
+            }
+            return new SearchResult(page, matches.cardinality());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private BitSet matchKeyword(String keyword) {
+        String name = normalizeName(keyword);
+        if (name.isEmpty()) {
+            return (BitSet) live.clone();
+        }
+
+        BitSet matches = new BitSet();
+        matchSubstring(NAME_PREFIX, name, true, matches);
+
+        // Từ khóa chỉ gồm số (và các ký tự định dạng số điện thoại) thì tìm thêm theo SĐT và mã đơn
+        String trimmed = keyword.trim();
+        if (trimmed.matches("[0-9 +.()-]+")) {
+            String digits = trimmed.replaceAll("\\D", "");
+            if (!digits.isEmpty()) {
+                matchSubstring(PHONE_PREFIX, digits, false, matches);
+            }
+            if (trimmed.matches("\\d{1,10}")) {
+                matchIdPrefix(Long.parseLong(trimmed), matches);
+            }
+        }
+        return matches;
+    }
+
+    private void matchSubstring(String prefix, String needle, boolean byName, BitSet out) {
+        if (needle.length() < GRAM) {
+            // Từ khóa quá ngắn để dùng trigram: duyệt trực tiếp
+            for (Map.Entry<Integer, Doc> entry : docs.entrySet()) {
+                String haystack = byName ? entry.getValue().name() : entry.getValue().phone();
+                if (haystack.contains(needle)) {
+                    out.set(entry.getKey());
+                }
+            }
+            return;
+        }
+
+        List<IntPostings> lists = new ArrayList<>();
+        for (String gram : trigrams(needle)) {
+            IntPostings postings = grams.get(prefix + gram);
+            if (postings == null) {
+                return;
+            }
+            lists.add(postings);
+        }
+        lists.sort(Comparator.comparingInt(IntPostings::size));
+
+        // Giao từ danh sách ngắn nhất, rồi kiểm tra lại vì trigram khớp chưa chắc là chuỗi con
+        IntPostings smallest = lists.get(0);
+        for (int i = 0; i < smallest.size(); i++) {
+            int id = smallest.get(i);
+            boolean all = true;
+            for (int l = 1; l < lists.size() && all; l++) {
+                all = lists.get(l).contains(id);
+            }
+            if (all) {
+                Doc doc = docs.get(id);
+                String haystack = byName ? doc.name() : doc.phone();
+                if (haystack.contains(needle)) {
+                    out.set(id);
+                }
+            }
+        }
+    }
+
+    // Mã đơn bắt đầu bằng n: n, n0..n9, n00..n99, ...
+    private void matchIdPrefix(long prefix, BitSet out) {
+        int maxId = live.length() - 1;
+        for (long from = prefix, to = prefix + 1; from <= maxId; from *= 10, to *= 10) {
+            if (from == 0) {
+                break;
+            }
+            int upper = (int) Math.min(to, (long) maxId + 1);
+            for (int id = live.nextSetBit((int) from); id >= 0 && id < upper; id = live.nextSetBit(id + 1)) {
+                out.set(id);
+            }
+        }
+    }
+
+    private void put(int id, String customerName, String phone, OrderStatus status) {
+        delete(id);
+        Doc doc = new Doc(normalizeName(customerName), phone == null ? "" : phone.replaceAll("\\D", ""), status);
+        docs.put(id, doc);
+        live.set(id);
+        if (status != null) {
+            byStatus.computeIfAbsent(status, s -> new BitSet()).set(id);
+        }
+        for (String gram : trigrams(doc.name())) {
+            grams.computeIfAbsent(NAME_PREFIX + gram, g -> new IntPostings()).add(id);
+        }
+        for (String gram : trigrams(doc.phone())) {
+            grams.computeIfAbsent(PHONE_PREFIX + gram, g -> new IntPostings()).add(id);
+        }
+    }
+
+    private void delete(int id) {
+        Doc doc = docs.remove(id);
+        if (doc == null) {
+            return;
+        }
+        live.clear(id);
+        if (doc.status() != null) {
+            byStatus.get(doc.status()).clear(id);
+        }
+        removeGrams(NAME_PREFIX, doc.name(), id);
+        removeGrams(PHONE_PREFIX, doc.phone(), id);
+    }
+
+    private void removeGrams(String prefix, String text, int id) {
+        for (String gram : trigrams(text)) {
+            IntPostings postings = grams.get(prefix + gram);
+            if (postings != null && postings.remove(id) && postings.size() == 0) {
+                grams.remove(prefix + gram);
+            }
+        }
+    }
+
+    private static Set<String> trigrams(String text) {
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            result.add(text.substring(i, i + GRAM));
+        }
+        return result;
+    }
+
+    private static String normalizeName(String text) {
+        return TextNormalizer.fold(text).trim().replaceAll("\\s+", " ");
+    }
+
+    // Áp một thay đổi đã commit; đang dựng lại thì ghi lại để áp lần nữa lên bản dựng mới
+    private void apply(Runnable change) {
+        write(() -> {
+            change.run();
+            if (pendingChanges != null) {
+                pendingChanges.add(change);
+            }
+        });
+    }
+
+    private void write(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        } else {
+            change.run();
+        }
+    }
+
+    // Danh sách int tăng dần; id đơn mới luôn lớn nhất nên add thường chỉ là nối vào cuối
+    private static final class IntPostings {
+        private int[] values = new int[4];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        boolean contains(int value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+
+        void add(int value) {
+            int position = size == 0 || values[size - 1] < value ? -(size + 1) : Arrays.binarySearch(values, 0, size, value);
+            if (position >= 0) {
+                return;
+            }
+            int insertAt = -(position + 1);
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+            values[insertAt] = value;
+            size++;
+        }
+
+        boolean remove(int value) {
+            int position = Arrays.binarySearch(values, 0, size, value);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(values, position + 1, values, position, size - position - 1);
+            size--;
+            return true;
+        }
+    }
+}
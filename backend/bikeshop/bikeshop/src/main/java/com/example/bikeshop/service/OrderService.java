@@ -1,16 +1,20 @@
 package com.example.bikeshop.service;
 
 import com.example.bikeshop.dto.CreateOrderRequest;
+import com.example.bikeshop.dto.CursorPage;
+import com.example.bikeshop.dto.OrderSummary;
 import com.example.bikeshop.dto.ShippingInfoDTO;
 import com.example.bikeshop.dto.ShippingInfoRequest;
 import com.example.bikeshop.dto.UserOrderStatsDTO;
 import com.example.bikeshop.entity.*;
+import com.example.bikeshop.repository.OrderItemRepository;
 import com.example.bikeshop.repository.OrderRepository;
 import com.example.bikeshop.repository.ProductRepository;
 import com.example.bikeshop.repository.ShippingInfoRepository;
 import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -19,8 +23,14 @@ import org.springframework.stereotype.Service;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class OrderService {
@@ -32,23 +42,46 @@ public class OrderService {
 
     @Autowired
     private ShippingInfoRepository shippingInfoRepository;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    @Autowired
+    private PendingOrderTimerWheel pendingOrderTimerWheel;
+
+    @Autowired
+    private RevenueRollupService revenueRollupService;
+
+    @Autowired
+    private OrderSearchIndex orderSearchIndex;
+
     public Order getOrderById(Long orderId) {
         return orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng"));
     }
 
+    @Transactional
     public Order createOrder(CreateOrderRequest request, User user) {
+        Map<Long, Integer> quantities = collectQuantities(request.getItems());
+        Map<Long, Product> products = loadProducts(quantities.keySet());
+
+        // Giữ hàng trong kho trước; thiếu hàng ở bất kỳ dòng nào thì cả đơn bị từ chối
+        inventoryService.reserve(quantities);
+
         Order order = new Order();
         order.setCustomerName(request.getCustomerName());
         order.setUser(user);
         order.setStatus(OrderStatus.PENDING);
+        order.setPendingSince(order.getCreatedAt());
 
         List<OrderItem> items = new ArrayList<>();
         BigDecimal totalPrice = BigDecimal.ZERO;
 
         for (CreateOrderRequest.ItemRequest itemReq : request.getItems()) {
-            Product product = productRepository.findById(itemReq.getProductId())
-                    .orElseThrow(() -> new RuntimeException("Product not found"));
+            Product product = products.get(itemReq.getProductId());
 
             OrderItem item = new OrderItem();
             item.setOrder(order);
@@ -84,14 +117,42 @@ public class OrderService {
         shippingInfoRepository.save(shippingInfo);
 
         order.setShippingInfo(shippingInfo);
+
+        // Đơn chưa thanh toán sẽ tự hủy khi quá hạn
+        pendingOrderTimerWheel.track(order.getId(), order.getPendingSince());
+        orderSearchIndex.index(order);
         return order;
     }
 
+    @Transactional
     public Order updateOrder(Long orderId, CreateOrderRequest request) {
         // 1. Tìm đơn hàng cũ
         Order existingOrder = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng với ID: " + orderId));
 
+        Map<Long, Integer> quantities = collectQuantities(request.getItems());
+        Map<Long, Product> products = loadProducts(quantities.keySet());
+
+        // Chỉ giữ/trả phần chênh lệch số lượng so với đơn cũ
+        if (holdsStock(existingOrder.getStatus())) {
+            Map<Long, Integer> toReserve = new HashMap<>(quantities);
+            Map<Long, Integer> toRelease = new HashMap<>();
+            for (OrderItem oldItem : existingOrder.getItems()) {
+                Long productId = oldItem.getProduct().getId();
+                int remaining = toReserve.getOrDefault(productId, 0) - oldItem.getQuantity();
+                if (remaining >= 0) {
+                    toReserve.put(productId, remaining);
+                } else {
+                    toReserve.remove(productId);
+                    toRelease.merge(productId, -remaining, Integer::sum);
+                }
+            }
+            inventoryService.release(toRelease);
+            inventoryService.reserve(toReserve);
+        }
+
+        BigDecimal previousTotal = existingOrder.getTotalPrice();
+
         // 2. Cập nhật thông tin cơ bản
         existingOrder.setCustomerName(request.getCustomerName());
 
@@ -103,8 +164,7 @@ public class OrderService {
         BigDecimal totalPrice = BigDecimal.ZERO;
 
         for (CreateOrderRequest.ItemRequest itemReq : request.getItems()) {
-            Product product = productRepository.findById(itemReq.getProductId())
-                    .orElseThrow(() -> new RuntimeException("Không tìm thấy sản phẩm với ID: " + itemReq.getProductId()));
+            Product product = products.get(itemReq.getProductId());
 
             OrderItem item = new OrderItem();
             item.setOrder(existingOrder);
@@ -119,8 +179,9 @@ public class OrderService {
             updatedItems.add(item);
         }
 
-        existingOrder.setItems(updatedItems);
+        existingOrder.getItems().addAll(updatedItems);
         existingOrder.setTotalPrice(totalPrice);
+        revenueRollupService.onTotalChanged(existingOrder, previousTotal);
 
         // 5. Cập nhật thông tin vận chuyển nếu có
         ShippingInfoRequest shippingInfoRequest = request.getShippingInfo();
@@ -135,29 +196,91 @@ public class OrderService {
             shippingInfoRepository.save(shippingInfo);
         }
 
-        return orderRepository.save(existingOrder);
+        Order saved = orderRepository.save(existingOrder);
+        orderSearchIndex.index(saved);
+        return saved;
     }
 
+    @Transactional
     public Order updateOrderStatus(Long orderId, OrderStatus status) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng với ID: " + orderId));
         System.out.println("Current status: " + order.getStatus());  // Log hiện tại của trạng thái
+        OrderStatus previous = order.getStatus();
+        // Hủy thì trả hàng về kho; mở lại đơn đã hủy (sang bất kỳ trạng thái nào khác) thì phải giữ hàng lại
+        if (holdsStock(previous) && !holdsStock(status)) {
+            inventoryService.release(itemQuantities(order));
+        } else if (!holdsStock(previous) && holdsStock(status)) {
+            inventoryService.reserve(itemQuantities(order));
+        }
+
+        if (status == OrderStatus.PENDING) {
+            // Mở lại thành PENDING thì có trọn TTL mới, không bị hủy ngay vì đơn đã tạo từ lâu
+            if (previous != OrderStatus.PENDING) {
+                order.setPendingSince(LocalDateTime.now());
+            }
+            pendingOrderTimerWheel.track(order.getId(), order.getPendingSince() != null ? order.getPendingSince() : order.getCreatedAt());
+        } else {
+            pendingOrderTimerWheel.cancel(order.getId());
+        }
+        revenueRollupService.onStatusChanged(order, previous, status);
         order.setStatus(status);
         System.out.println("Updated status: " + order.getStatus());  // Log trạng thái mới
+        orderSearchIndex.updateStatus(List.of(orderId), status);
         return orderRepository.save(order);
     }
 
+    @Transactional
     public void deleteOrder(Long orderId) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy đơn hàng"));
 
+        // Đơn đang giữ hàng mà chưa giao đi thì trả hàng lại vào kho; hàng đã giao đi thì không còn trong kho để trả
+        if (holdsStock(order.getStatus()) && !leftWarehouse(order.getStatus())) {
+            inventoryService.release(itemQuantities(order));
+        }
+        revenueRollupService.onDeleted(order);
+        pendingOrderTimerWheel.cancel(orderId);
         orderRepository.delete(order);
+        orderSearchIndex.remove(orderId);
+    }
+
+    // Hủy hàng loạt các đơn PENDING đã quá hạn thanh toán và trả hàng về kho.
+    // Đơn đã được xác nhận/hủy trong lúc chờ thì bị bỏ qua nhờ điều kiện status = PENDING.
+    @Transactional
+    public int expirePendingOrders(List<Long> orderIds) {
+        List<Long> pendingIds = orderRepository.lockPendingIds(orderIds);
+        if (pendingIds.isEmpty()) {
+            return 0;
+        }
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (Object[] row : orderItemRepository.sumQuantitiesByProduct(pendingIds)) {
+            quantities.put((Long) row[0], ((Number) row[1]).intValue());
+        }
+        int cancelled = orderRepository.cancelPending(pendingIds);
+        inventoryService.release(quantities);
+        orderSearchIndex.updateStatus(pendingIds, OrderStatus.CANCELLED);
+        return cancelled;
     }
 
-    public Page<Order> getAllOrdersPaginated(int page, int size, String sortBy, String sortDir) {
+    public Page<OrderSummary> getAllOrdersPaginated(int page, int size, String sortBy, String sortDir) {
         Sort sort = sortDir.equalsIgnoreCase("asc") ? Sort.by(sortBy).ascending() : Sort.by(sortBy).descending();
         Pageable pageable = PageRequest.of(page, size, sort);
-        return orderRepository.findAll(pageable);
+        return orderRepository.findSummaries(pageable);
+    }
+
+    // Phân trang keyset cho trang quản trị: lật sâu vào lịch sử đơn hàng không còn OFFSET/COUNT(*)
+    public CursorPage<Order> getOrdersAfter(String after, int size) {
+        int limit = CursorCodec.clampSize(size);
+        Pageable pageable = PageRequest.of(0, limit + 1);
+        List<Order> rows;
+        if (after == null) {
+            rows = orderRepository.findLatest(pageable);
+        } else {
+            CursorCodec.Cursor cursor = CursorCodec.decode(after);
+            rows = orderRepository.findLatestBefore(cursor.keyAsDateTime(), cursor.id(), pageable);
+        }
+        return CursorPage.of(rows, limit, o -> CursorCodec.encode(o.getCreatedAt(), o.getId()));
     }
 
     public UserOrderStatsDTO getUserOrderStats(Long userId) {
@@ -181,7 +304,48 @@ public class OrderService {
         return orders;
     }
 
-    public List<Order> searchOrders(String keyword, String status) {
+    // Gộp các dòng trùng sản phẩm và kiểm tra số lượng hợp lệ
+    private Map<Long, Integer> collectQuantities(List<CreateOrderRequest.ItemRequest> items) {
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (CreateOrderRequest.ItemRequest itemReq : items) {
+            if (itemReq.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Số lượng sản phẩm phải lớn hơn 0");
+            }
+            quantities.merge(itemReq.getProductId(), itemReq.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+
+    // Lấy tất cả sản phẩm của đơn trong một truy vấn thay vì findById từng dòng
+    private Map<Long, Product> loadProducts(Set<Long> productIds) {
+        Map<Long, Product> products = productRepository.findAllById(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        for (Long productId : productIds) {
+            if (!products.containsKey(productId)) {
+                throw new RuntimeException("Không tìm thấy sản phẩm với ID: " + productId);
+            }
+        }
+        return products;
+    }
+
+    private Map<Long, Integer> itemQuantities(Order order) {
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (OrderItem item : order.getItems()) {
+            quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+
+    // Quy tắc duy nhất cho việc đơn có đang chiếm hàng trong kho hay không: mọi đơn trừ đơn đã hủy
+    private boolean holdsStock(OrderStatus status) {
+        return status != OrderStatus.CANCELLED;
+    }
+
+    private boolean leftWarehouse(OrderStatus status) {
+        return status == OrderStatus.SHIPPING || status == OrderStatus.DELIVERED || status == OrderStatus.RETURNED;
+    }
+
+    public Page<OrderSummary> searchOrders(String keyword, String status, int page, int size) {
         OrderStatus orderStatus = null;
         if (status != null && !status.isBlank()) {
             try {
@@ -190,7 +354,25 @@ public class OrderService {
                 throw new RuntimeException("Invalid status value: " + status);
             }
         }
-        return orderRepository.searchOrders(keyword, orderStatus);
+        Pageable pageable = PageRequest.of(Math.max(page, 0), Math.min(Math.max(size, 1), 100));
+        String normalizedKeyword = keyword == null || keyword.isBlank() ? null : keyword.trim();
+        if (!orderSearchIndex.isReady()) {
+            return orderRepository.searchOrders(normalizedKeyword, orderStatus, pageable);
+        }
+
+        OrderSearchIndex.SearchResult result = orderSearchIndex.search(
+                normalizedKeyword, orderStatus, (int) pageable.getOffset(), pageable.getPageSize());
+        if (result.orderIds().isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, result.total());
+        }
+        // Giữ nguyên thứ tự của index (đơn mới nhất trước)
+        Map<Long, OrderSummary> summaries = orderRepository.findSummariesByIds(result.orderIds()).stream()
+                .collect(Collectors.toMap(OrderSummary::getId, Function.identity()));
+        List<OrderSummary> content = result.orderIds().stream()
+                .map(summaries::get)
+                .filter(Objects::nonNull)
+                .toList();
+        return new PageImpl<>(content, pageable, result.total());
     }
 
 }
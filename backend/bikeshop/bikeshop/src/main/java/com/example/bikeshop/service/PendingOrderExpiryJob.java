@@ -0,0 +1,59 @@
+package com.example.bikeshop.service;
+
+import com.example.bikeshop.repository.OrderRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Quay timer wheel mỗi tick và hủy các đơn PENDING quá hạn theo lô,
+// thay cho việc định kỳ quét cả bảng orders.
+@Component
+public class PendingOrderExpiryJob {
+    @Autowired
+    private PendingOrderTimerWheel pendingOrderTimerWheel;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Value("${order.pending-expiry.batch-size:500}")
+    private int batchSize;
+
+    private volatile boolean ready = false;
+
+    // Khởi động lại thì nạp hạn của các đơn còn PENDING; đơn đã quá hạn sẽ bị hủy ở tick đầu tiên
+    @EventListener(ApplicationReadyEvent.class)
+    public void restore() {
+        for (Object[] row : orderRepository.findPendingDeadlines()) {
+            pendingOrderTimerWheel.track((Long) row[0], (LocalDateTime) row[1]);
+        }
+        ready = true;
+    }
+
+    @Scheduled(fixedDelayString = "${order.pending-expiry.tick-ms:1000}")
+    public void tick() {
+        if (!ready) {
+            return;
+        }
+        List<Long> expired = pendingOrderTimerWheel.advance(System.currentTimeMillis());
+        for (int from = 0; from < expired.size(); from += batchSize) {
+            List<Long> batch = expired.subList(from, Math.min(from + batchSize, expired.size()));
+            try {
+                orderService.expirePendingOrders(batch);
+            } catch (RuntimeException e) {
+                // Lỗi DB thì đưa lô này về lại wheel để thử ở tick sau
+                long now = System.currentTimeMillis();
+                batch.forEach(orderId -> pendingOrderTimerWheel.schedule(orderId, now));
+                System.err.println("Không thể hủy đơn quá hạn: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.bikeshop.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Timer wheel phân cấp giữ hạn thanh toán của các đơn PENDING.
+// Mỗi tầng có 64 ô; tầng L có mỗi ô dài 64^L tick. Đơn nằm ở tầng thấp nhất mà hạn của nó
+// cách hiện tại chưa tới 64 ô, và được hạ dần xuống tầng dưới khi kim giây quay tới.
+// Thêm/hủy là O(1), mỗi tick chỉ đụng tới các ô đến hạn chứ không quét bảng orders.
+@Component
+public class PendingOrderTimerWheel {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+
+    private final long tickMillis;
+    private final long ttlMillis;
+
+    // wheel.get(level).get(slot): orderId -> tick hết hạn
+    private final List<List<Map<Long, Long>>> wheel = new ArrayList<>(LEVELS);
+    // Đơn có hạn xa hơn cả tầng cao nhất
+    private final Map<Long, Long> overflow = new HashMap<>();
+    // orderId -> {level, slot}; level = -1 nghĩa là nằm trong overflow
+    private final Map<Long, int[]> locations = new HashMap<>();
+    private final List<Long> due = new ArrayList<>();
+    private long currentTick;
+
+    public PendingOrderTimerWheel(@Value("${order.pending-expiry.tick-ms:1000}") long tickMillis,
+                                  @Value("${order.pending-ttl-minutes:30}") long ttlMinutes) {
+        this.tickMillis = tickMillis;
+        this.ttlMillis = ttlMinutes * 60_000;
+        for (int level = 0; level < LEVELS; level++) {
+            List<Map<Long, Long>> slots = new ArrayList<>(SLOTS);
+            for (int slot = 0; slot < SLOTS; slot++) {
+                slots.add(new HashMap<>());
+            }
+            wheel.add(slots);
+        }
+        this.currentTick = System.currentTimeMillis() / tickMillis;
+    }
+
+    // Đặt hạn cho đơn = thời điểm đơn vào trạng thái PENDING + TTL
+    public void track(Long orderId, LocalDateTime pendingSince) {
+        LocalDateTime since = pendingSince != null ? pendingSince : LocalDateTime.now();
+        long sinceMillis = since.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        schedule(orderId, sinceMillis + ttlMillis);
+    }
+
+    public synchronized void schedule(Long orderId, long deadlineMillis) {
+        remove(orderId);
+        place(orderId, Math.ceilDiv(deadlineMillis, tickMillis));
+    }
+
+    public synchronized void cancel(Long orderId) {
+        remove(orderId);
+    }
+
+    public synchronized int size() {
+        return locations.size() + due.size();
+    }
+
+    // Quay kim tới thời điểm nowMillis, trả về các đơn đã quá hạn
+    public synchronized List<Long> advance(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            // Hạ các ô của tầng trên xuống trước (từ cao tới thấp), rồi mới xử lý ô hiện tại ở tầng 0
+            for (int level = LEVELS - 1; level >= 1; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    cascade(level, (int) ((currentTick >> (SLOT_BITS * level)) & SLOT_MASK));
+                    if (level == LEVELS - 1) {
+                        cascadeOverflow();
+                    }
+                }
+            }
+            Map<Long, Long> slot = slot(0, (int) (currentTick & SLOT_MASK));
+            for (Long orderId : slot.keySet()) {
+                locations.remove(orderId);
+                due.add(orderId);
+            }
+            slot.clear();
+        }
+        List<Long> expired = new ArrayList<>(due);
+        due.clear();
+        return expired;
+    }
+
+    private void cascade(int level, int slotIndex) {
+        Map<Long, Long> slot = slot(level, slotIndex);
+        if (slot.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> entries = new HashMap<>(slot);
+        slot.clear();
+        entries.forEach(this::place);
+    }
+
+    private void cascadeOverflow() {
+        if (overflow.isEmpty()) {
+            return;
+        }
+        Map<Long, Long> entries = new HashMap<>(overflow);
+        overflow.clear();
+        entries.forEach(this::place);
+    }
+
+    private void place(Long orderId, long deadlineTick) {
+        if (deadlineTick <= currentTick) {
+            locations.remove(orderId);
+            due.add(orderId);
+            return;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            int shift = SLOT_BITS * level;
+            if ((deadlineTick >> shift) - (currentTick >> shift) < SLOTS) {
+                int slot = (int) ((deadlineTick >> shift) & SLOT_MASK);
+                slot(level, slot).put(orderId, deadlineTick);
+                locations.put(orderId, new int[]{level, slot});
+                return;
+            }
+        }
+        overflow.put(orderId, deadlineTick);
+        locations.put(orderId, new int[]{-1, -1});
+    }
+
+    private Map<Long, Long> slot(int level, int index) {
+        return wheel.get(level).get(index);
+    }
+
+    private void remove(Long orderId) {
+        int[] location = locations.remove(orderId);
+        if (location == null) {
+            due.remove(orderId);
+        } else if (location[0] < 0) {
+            overflow.remove(orderId);
+        } else {
+            slot(location[0], location[1]).remove(orderId);
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package com.example.bikeshop.service;
+
+import com.example.bikeshop.dto.PriceBucketDTO;
+import com.example.bikeshop.dto.ProductFacetsDTO;
+import com.example.bikeshop.entity.Product;
+import com.example.bikeshop.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Component
+public class ProductFacetIndex {
+    @Autowired
+    private ProductRepository productRepository;
+
+    // Các mốc giá (VNĐ) để đếm sản phẩm theo khoảng giá trên sidebar
+    @Value("${catalog.facets.price-buckets:0,2000000,5000000,10000000,20000000}")
+    private double[] priceBucketBounds;
+
+    // Mỗi sản phẩm được gán một ordinal, bit thứ ordinal trong các BitSet đại diện cho sản phẩm đó
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+    private long[] productIds = new long[64];
+    private double[] prices = new double[64];
+    private String[] categoryKeys = new String[64];
+    private String[] brandKeys = new String[64];
+    private int nextOrdinal = 0;
+    private final BitSet live = new BitSet();
+
+    // Key đã bỏ dấu/chữ thường (giống collation của MySQL), label giữ giá trị gốc để hiển thị
+    private final Map<String, BitSet> byCategory = new HashMap<>();
+    private final Map<String, BitSet> byBrand = new HashMap<>();
+    private final Map<String, String> categoryLabels = new HashMap<>();
+    private final Map<String, String> brandLabels = new HashMap<>();
+
+    // Giá được sắp xếp tăng dần, sortedOrdinals[i] là sản phẩm có giá sortedPrices[i]
+    private double[] sortedPrices = new double[0];
+    private int[] sortedOrdinals = new int[0];
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Thay đổi đến trong lúc đang dựng lại (khác null khi đang dựng), giữ dưới write lock
+    private List<Runnable> pendingChanges;
+    private volatile boolean ready = false;
+
+    public record FilterResult(List<Long> productIds, long total) {
+    }
+
+    // Các field của sản phẩm mà index dùng, chụp lại lúc gọi index() vì thay đổi chỉ được áp sau commit
+    private record Entry(Long id, Double price, String category, String brand) {
+        static Entry of(Product product) {
+            return new Entry(product.getId(), product.getPrice(), product.getCategory(), product.getBrand());
+        }
+    }
+
+    // Đọc sản phẩm từ DB không giữ lock; thay đổi commit trong lúc đó được ghi lại và áp lại lên bản dựng mới
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        write(() -> pendingChanges = new ArrayList<>());
+        List<Product> products;
+        try {
+            products = productRepository.findAll();
+        } catch (RuntimeException e) {
+            write(() -> pendingChanges = null);
+            throw e;
+        }
+        products.sort(Comparator.comparing(Product::getId));
+        write(() -> {
+            ordinals.clear();
+            live.clear();
+            byCategory.clear();
+            byBrand.clear();
+            categoryLabels.clear();
+            brandLabels.clear();
+            nextOrdinal = 0;
+            int capacity = Math.max(64, products.size());
+            productIds = new long[capacity];
+            prices = new double[capacity];
+            categoryKeys = new String[capacity];
+            brandKeys = new String[capacity];
+
+            List<Integer> priced = new ArrayList<>();
+            for (Product product : products) {
+                int ordinal = nextOrdinal();
+                attach(Entry.of(product), ordinal);
+                if (product.getPrice() != null) {
+                    priced.add(ordinal);
+                }
+            }
+            priced.sort(Comparator.comparingDouble(o -> prices[o]));
+            sortedPrices = new double[priced.size()];
+            sortedOrdinals = new int[priced.size()];
+            for (int i = 0; i < priced.size(); i++) {
+                sortedOrdinals[i] = priced.get(i);
+                sortedPrices[i] = prices[priced.get(i)];
+            }
+            List<Runnable> changes = pendingChanges;
+            pendingChanges = null;
+            changes.forEach(Runnable::run);
+            ready = true;
+        });
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public boolean contains(Long productId) {
+        lock.readLock().lock();
+        try {
+            return ordinals.containsKey(productId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Các thay đổi chỉ áp vào index sau khi transaction commit
+    public void index(Product product) {
+        if (product == null || product.getId() == null) {
+            return;
+        }
+        Entry entry = Entry.of(product);
+        afterCommit(() -> apply(() -> {
+            // Sản phẩm đã có thì giữ nguyên ordinal để thứ tự theo id không đổi
+            Integer existing = ordinals.get(entry.id());
+            if (existing != null) {
+                detach(existing);
+            }
+            int ordinal = existing != null ? existing : nextOrdinal();
+            attach(entry, ordinal);
+            if (entry.price() != null) {
+                insertPrice(ordinal);
+            }
+        }));
+    }
+
+    public void remove(Long productId) {
+        afterCommit(() -> apply(() -> {
+            Integer ordinal = ordinals.remove(productId);
+            if (ordinal != null) {
+                detach(ordinal);
+            }
+        }));
+    }
+
+    public FilterResult filter(String category, String brand, Double minPrice, Double maxPrice, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            BitSet matches = (BitSet) live.clone();
+            matches.and(categoryBits(category));
+            matches.and(brandBits(brand));
+            matches.and(priceBits(minPrice, maxPrice));
+
+            List<Long> page = new ArrayList<>();
+            int skipped = 0;
+            for (int o = matches.nextSetBit(0); o >= 0 && page.size() < limit; o = matches.nextSetBit(o + 1)) {
+                if (skipped++ >= offset) {
+                    page.add(productIds[o]);
+                }
+            }
+            return new FilterResult(page, matches.cardinality());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Mỗi nhóm facet được đếm với tất cả bộ lọc trừ bộ lọc của chính nhóm đó,
+    // để sidebar vẫn hiện số lượng cho các lựa chọn khác trong cùng nhóm
+    public ProductFacetsDTO facets(String category, String brand, Double minPrice, Double maxPrice) {
+        lock.readLock().lock();
+        try {
+            BitSet categoryFilter = categoryBits(category);
+            BitSet brandFilter = brandBits(brand);
+            BitSet priceFilter = priceBits(minPrice, maxPrice);
+
+            BitSet all = (BitSet) live.clone();
+            all.and(categoryFilter);
+            all.and(brandFilter);
+            all.and(priceFilter);
+
+            BitSet withoutCategory = (BitSet) live.clone();
+            withoutCategory.and(brandFilter);
+            withoutCategory.and(priceFilter);
+            Map<String, Long> categoryCounts = countBy(byCategory, categoryLabels, withoutCategory);
+
+            BitSet withoutBrand = (BitSet) live.clone();
+            withoutBrand.and(categoryFilter);
+            withoutBrand.and(priceFilter);
+            Map<String, Long> brandCounts = countBy(byBrand, brandLabels, withoutBrand);
+
+            BitSet withoutPrice = (BitSet) live.clone();
+            withoutPrice.and(categoryFilter);
+            withoutPrice.and(brandFilter);
+            List<PriceBucketDTO> buckets = new ArrayList<>();
+            for (int i = 0; i < priceBucketBounds.length; i++) {
+                Double from = priceBucketBounds[i];
+                Double to = i + 1 < priceBucketBounds.length ? priceBucketBounds[i + 1] : null;
+                int start = lowerBound(from);
+                int end = to == null ? sortedPrices.length : lowerBound(to);
+                long count = 0;
+                for (int p = start; p < end; p++) {
+                    if (withoutPrice.get(sortedOrdinals[p])) {
+                        count++;
+                    }
+                }
+                buckets.add(new PriceBucketDTO(from, to, count));
+            }
+
+            return new ProductFacetsDTO(all.cardinality(), categoryCounts, brandCounts, buckets);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<String, Long> countBy(Map<String, BitSet> index, Map<String, String> labels, BitSet filter) {
+        Map<String, Long> counts = new TreeMap<>();
+        for (Map.Entry<String, BitSet> entry : index.entrySet()) {
+            BitSet bits = (BitSet) entry.getValue().clone();
+            bits.and(filter);
+            int count = bits.cardinality();
+            if (count > 0) {
+                counts.put(labels.get(entry.getKey()), (long) count);
+            }
+        }
+        return counts;
+    }
+
+    private BitSet categoryBits(String category) {
+        if (category == null) {
+            return live;
+        }
+        return byCategory.getOrDefault(TextNormalizer.fold(category), new BitSet());
+    }
+
+    private BitSet brandBits(String brand) {
+        if (brand == null) {
+            return live;
+        }
+        return byBrand.getOrDefault(TextNormalizer.fold(brand), new BitSet());
+    }
+
+    // Giống hasPriceBetween: cả hai đầu đều bao gồm, sản phẩm chưa có giá bị loại khi có lọc giá
+    private BitSet priceBits(Double minPrice, Double maxPrice) {
+        if (minPrice == null && maxPrice == null) {
+            return live;
+        }
+        int start = minPrice == null ? 0 : lowerBound(minPrice);
+        int end = maxPrice == null ? sortedPrices.length : upperBound(maxPrice);
+        BitSet bits = new BitSet();
+        for (int i = start; i < end; i++) {
+            bits.set(sortedOrdinals[i]);
+        }
+        return bits;
+    }
+
+    // Vị trí đầu tiên có giá >= price
+    private int lowerBound(double price) {
+        int low = 0, high = sortedPrices.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedPrices[mid] < price) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    // Vị trí đầu tiên có giá > price
+    private int upperBound(double price) {
+        int low = 0, high = sortedPrices.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedPrices[mid] <= price) low = mid + 1;
+            else high = mid;
+        }
+        return low;
+    }
+
+    private int nextOrdinal() {
+        int ordinal = nextOrdinal++;
+        if (ordinal == productIds.length) {
+            int capacity = productIds.length * 2;
+            productIds = Arrays.copyOf(productIds, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            categoryKeys = Arrays.copyOf(categoryKeys, capacity);
+            brandKeys = Arrays.copyOf(brandKeys, capacity);
+        }
+        return ordinal;
+    }
+
+    private void attach(Entry entry, int ordinal) {
+        ordinals.put(entry.id(), ordinal);
+        productIds[ordinal] = entry.id();
+        prices[ordinal] = entry.price() != null ? entry.price() : Double.NaN;
+        live.set(ordinal);
+
+        if (entry.category() != null) {
+            String key = TextNormalizer.fold(entry.category());
+            categoryKeys[ordinal] = key;
+            byCategory.computeIfAbsent(key, k -> new BitSet()).set(ordinal);
+            categoryLabels.putIfAbsent(key, entry.category());
+        }
+        if (entry.brand() != null) {
+            String key = TextNormalizer.fold(entry.brand());
+            brandKeys[ordinal] = key;
+            byBrand.computeIfAbsent(key, k -> new BitSet()).set(ordinal);
+            brandLabels.putIfAbsent(key, entry.brand());
+        }
+    }
+
+    // Ordinal của sản phẩm đã xóa không được dùng lại; rebuild() lúc khởi động sẽ nén lại
+    private void detach(int ordinal) {
+        live.clear(ordinal);
+        clearFacet(byCategory, categoryLabels, categoryKeys[ordinal], ordinal);
+        clearFacet(byBrand, brandLabels, brandKeys[ordinal], ordinal);
+        categoryKeys[ordinal] = null;
+        brandKeys[ordinal] = null;
+        if (!Double.isNaN(prices[ordinal])) {
+            removePrice(ordinal);
+        }
+    }
+
+    private void clearFacet(Map<String, BitSet> index, Map<String, String> labels, String key, int ordinal) {
+        if (key == null) {
+            return;
+        }
+        BitSet bits = index.get(key);
+        bits.clear(ordinal);
+        if (bits.isEmpty()) {
+            index.remove(key);
+            labels.remove(key);
+        }
+    }
+
+    private void insertPrice(int ordinal) {
+        double price = prices[ordinal];
+        int position = upperBound(price);
+        int size = sortedPrices.length;
+        double[] newPrices = new double[size + 1];
+        int[] newOrdinals = new int[size + 1];
+        System.arraycopy(sortedPrices, 0, newPrices, 0, position);
+        System.arraycopy(sortedOrdinals, 0, newOrdinals, 0, position);
+        newPrices[position] = price;
+        newOrdinals[position] = ordinal;
+        System.arraycopy(sortedPrices, position, newPrices, position + 1, size - position);
+        System.arraycopy(sortedOrdinals, position, newOrdinals, position + 1, size - position);
+        sortedPrices = newPrices;
+        sortedOrdinals = newOrdinals;
+    }
+
+    private void removePrice(int ordinal) {
+        double price = prices[ordinal];
+        int position = lowerBound(price);
+        while (position < sortedOrdinals.length && sortedOrdinals[position] != ordinal) {
+            position++;
+        }
+        if (position == sortedOrdinals.length) {
+            return;
+        }
+        int size = sortedPrices.length;
+        double[] newPrices = new double[size - 1];
+        int[] newOrdinals = new int[size - 1];
+        System.arraycopy(sortedPrices, 0, newPrices, 0, position);
+        System.arraycopy(sortedOrdinals, 0, newOrdinals, 0, position);
+        System.arraycopy(sortedPrices, position + 1, newPrices, position, size - position - 1);
+        System.arraycopy(sortedOrdinals, position + 1, newOrdinals, position, size - position - 1);
+        sortedPrices = newPrices;
+        sortedOrdinals = newOrdinals;
+    }
+
+    // Áp một thay đổi đã commit; đang dựng lại thì ghi lại để áp lần nữa lên bản dựng mới
+    private void apply(Runnable change) {
+        write(() -> {
+            change.run();
+            if (pendingChanges != null) {
+                pendingChanges.add(change);
+            }
+        });
+    }
+
+    private void write(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        } else {
+            change.run();
+        }
+    }
+}
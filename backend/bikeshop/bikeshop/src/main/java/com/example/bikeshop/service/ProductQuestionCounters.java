@@ -0,0 +1,96 @@
+package com.example.bikeshop.service;
+
+import com.example.bikeshop.repository.ProductReviewRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Số câu hỏi đã/chưa trả lời của từng sản phẩm, đếm một lần khi cần rồi cập nhật theo từng thay đổi.
+// Thay đổi đi kèm thao tác ghi DB của nó: trong lúc đang ghi, lần đếm có thể đã thấy dòng mới nên không được cache,
+// nếu không số đếm sẽ bị cộng thêm lần nữa. Giữ tối đa qa.counters.max-products sản phẩm gần nhất.
+@Component
+public class ProductQuestionCounters {
+
+    @Autowired
+    private ProductReviewRepository reviewRepository;
+
+    public record Counts(long answered, long unanswered) {
+    }
+
+    private final Map<Long, Counts> counts;
+    // Tăng mỗi lần có thay đổi, để lần đếm từ DB chạy song song với một thay đổi không ghi đè kết quả mới hơn
+    private final AtomicLong version = new AtomicLong();
+    // Số thao tác ghi đang chạy, đọc/ghi khi giữ khóa counts
+    private int writesInFlight;
+
+    public ProductQuestionCounters(@Value("${qa.counters.max-products:10000}") int maxProducts) {
+        this.counts = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Counts> eldest) {
+                return size() > maxProducts;
+            }
+        });
+    }
+
+    public Counts get(Long productId) {
+        Counts cached = counts.get(productId);
+        if (cached != null) {
+            return cached;
+        }
+        long before = version.get();
+        List<Object[]> rows = reviewRepository.countQuestions(productId);
+        long total = rows.isEmpty() ? 0 : ((Number) rows.get(0)[0]).longValue();
+        long answered = rows.isEmpty() ? 0 : ((Number) rows.get(0)[1]).longValue();
+        Counts loaded = new Counts(answered, total - answered);
+        synchronized (counts) {
+            if (version.get() == before && writesInFlight == 0) {
+                counts.putIfAbsent(productId, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    public void questionAdded(Long productId, Runnable write) {
+        change(productId, 0, 1, write);
+    }
+
+    public void questionRemoved(Long productId, boolean answered, Runnable write) {
+        change(productId, answered ? -1 : 0, answered ? 0 : -1, write);
+    }
+
+    public void answerAdded(Long productId, Runnable write) {
+        change(productId, 1, -1, write);
+    }
+
+    public void answerRemoved(Long productId, Runnable write) {
+        change(productId, -1, 1, write);
+    }
+
+    // Chạy write rồi cộng delta vào số đếm đang cache; write lỗi thì không cộng
+    private void change(Long productId, long answeredDelta, long unansweredDelta, Runnable write) {
+        synchronized (counts) {
+            version.incrementAndGet();
+            writesInFlight++;
+        }
+        boolean written = false;
+        try {
+            write.run();
+            written = true;
+        } finally {
+            synchronized (counts) {
+                version.incrementAndGet();
+                writesInFlight--;
+                if (written) {
+                    counts.computeIfPresent(productId, (id, current) ->
+                            new Counts(current.answered() + answeredDelta, current.unanswered() + unansweredDelta));
+                }
+            }
+        }
+    }
+}
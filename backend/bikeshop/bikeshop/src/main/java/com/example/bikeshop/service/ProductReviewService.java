@@ -1,5 +1,8 @@
 package com.example.bikeshop.service;
 
+import com.example.bikeshop.config.SchemaMigrations;
+import com.example.bikeshop.dto.CursorPage;
+import com.example.bikeshop.dto.ProductQuestionDTO;
 import com.example.bikeshop.dto.ProductReviewRequestDTO;
 import com.example.bikeshop.dto.ProductReviewResponse;
 import com.example.bikeshop.entity.Product;
@@ -8,14 +11,21 @@ import com.example.bikeshop.entity.User;
 import com.example.bikeshop.repository.ProductRepository;
 import com.example.bikeshop.repository.ProductReviewRepository;
 import com.example.bikeshop.repository.UserRepository;
+import com.example.bikeshop.specification.ProductReviewSpecification;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -29,6 +39,12 @@ public class ProductReviewService {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private ProductQuestionCounters questionCounters;
+
+    @Autowired
+    private SchemaMigrations schemaMigrations;
+
     public Page<ProductReviewResponse> getAllReviews(int page, int size) {
         Page<ProductReview> reviewPage = reviewRepository.findAll(PageRequest.of(page, size));
         return reviewPage.map(review -> new ProductReviewResponse(
@@ -43,6 +59,20 @@ public class ProductReviewService {
         ));
     }
 
+    public CursorPage<ProductReviewResponse> getReviewsAfter(String after, int size) {
+        int limit = CursorCodec.clampSize(size);
+        Pageable pageable = PageRequest.of(0, limit + 1);
+        List<ProductReview> rows;
+        if (after == null) {
+            rows = reviewRepository.findLatest(pageable);
+        } else {
+            CursorCodec.Cursor cursor = CursorCodec.decode(after);
+            rows = reviewRepository.findLatestBefore(cursor.keyAsDateTime(), cursor.id(), pageable);
+        }
+        return CursorPage.of(rows, limit, r -> CursorCodec.encode(r.getCreatedAt(), r.getId()))
+                .map(ProductReviewResponse::new);
+    }
+
     public void addReview(ProductReviewRequestDTO request, Long userId) {
         Product product = productRepository.findById(request.getProductId())
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy sản phẩm"));
@@ -56,7 +86,44 @@ public class ProductReviewService {
         review.setComment(request.getComment());
         review.setCreatedAt(LocalDateTime.now());
 
-        reviewRepository.save(review);
+        questionCounters.questionAdded(product.getId(), () -> reviewRepository.save(review));
+    }
+
+    // Hỏi đáp của một sản phẩm, phân trang keyset theo (createdAt, id) giảm dần
+    public CursorPage<ProductQuestionDTO> getQuestionsAfter(Long productId, String after, int size) {
+        int limit = CursorCodec.clampSize(size);
+        Pageable pageable = PageRequest.of(0, limit + 1);
+        List<ProductQuestionDTO> rows;
+        if (after == null) {
+            rows = reviewRepository.findQuestions(productId, pageable);
+        } else {
+            CursorCodec.Cursor cursor = CursorCodec.decode(after);
+            rows = reviewRepository.findQuestionsBefore(productId, cursor.keyAsDateTime(), cursor.id(), pageable);
+        }
+        return CursorPage.of(rows, limit, q -> CursorCodec.encode(q.getCreatedAt(), q.getId()));
+    }
+
+    public ProductQuestionCounters.Counts getQuestionCounts(Long productId) {
+        return questionCounters.get(productId);
+    }
+
+    // Tìm trong câu hỏi và câu trả lời; productId null là tìm trên mọi sản phẩm
+    public Page<ProductReviewResponse> searchReviews(Long productId, String keyword, int page, int size) {
+        Pageable pageable = PageRequest.of(page, size);
+        String phrase = TextNormalizer.fulltextPhrase(keyword);
+        if (phrase != null && schemaMigrations.isFulltextAvailable()) {
+            Page<Long> ids = reviewRepository.searchIdsFulltext(phrase, productId, pageable);
+            Map<Long, ProductReview> byId = reviewRepository.findByIdIn(ids.getContent()).stream()
+                    .collect(Collectors.toMap(ProductReview::getId, Function.identity()));
+            List<ProductReview> rows = ids.getContent().stream().map(byId::get).filter(Objects::nonNull).toList();
+            return new PageImpl<>(rows, pageable, ids.getTotalElements()).map(ProductReviewResponse::new);
+        }
+
+        // Không có FULLTEXT (H2 khi test, hoặc từ khóa quá ngắn): dùng LIKE
+        Specification<ProductReview> spec = Specification.where(ProductReviewSpecification.forProduct(productId))
+                .and(ProductReviewSpecification.containsKeyword(keyword));
+        return reviewRepository.findAll(spec, PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "id")))
+                .map(ProductReviewResponse::new);
     }
 
     public List<ProductReviewResponse> getReviewsByProduct(Long productId) {
@@ -85,7 +152,8 @@ public class ProductReviewService {
             throw new RuntimeException("Không có quyền xoá đánh giá này");
         }
 
-        reviewRepository.delete(review);
+        questionCounters.questionRemoved(review.getProduct().getId(), review.getAnswer() != null,
+                () -> reviewRepository.delete(review));
     }
 
 
@@ -117,9 +185,10 @@ public class ProductReviewService {
         ProductReview review = reviewRepository.findById(reviewId)
                 .orElseThrow(() -> new RuntimeException("Đánh giá không tồn tại"));
 
+        boolean wasAnswered = review.getAnswer() != null;
         review.setAnswer(answer);
         review.setAnsweredAt(LocalDateTime.now());
-        reviewRepository.save(review);
+        saveAnswer(review, wasAnswered);
     }
 
     // Sửa câu trả lời
@@ -132,9 +201,10 @@ public class ProductReviewService {
             throw new RuntimeException("Không có quyền chỉnh sửa câu trả lời");
         }
 
+        boolean wasAnswered = review.getAnswer() != null;
         review.setAnswer(newAnswer);
         review.setAnsweredAt(LocalDateTime.now());
-        reviewRepository.save(review);
+        saveAnswer(review, wasAnswered);
     }
 
     // Xoá câu trả lời
@@ -146,9 +216,10 @@ public class ProductReviewService {
             throw new RuntimeException("Không có quyền xoá câu trả lời");
         }
 
+        boolean wasAnswered = review.getAnswer() != null;
         review.setAnswer(null);
         review.setAnsweredAt(null);
-        reviewRepository.save(review);
+        saveAnswer(review, wasAnswered);
     }
 
     // Lấy danh sách câu trả lời (có phân trang)
@@ -158,5 +229,15 @@ public class ProductReviewService {
                 .map(ProductReviewResponse::new);
     }
 
+    private void saveAnswer(ProductReview review, boolean wasAnswered) {
+        boolean answered = review.getAnswer() != null;
+        Runnable save = () -> reviewRepository.save(review);
+        if (answered && !wasAnswered) {
+            questionCounters.answerAdded(review.getProduct().getId(), save);
+        } else if (!answered && wasAnswered) {
+            questionCounters.answerRemoved(review.getProduct().getId(), save);
+        } else {
+            save.run();
+        }
+    }
 }
-
@@ -0,0 +1,244 @@
+package com.example.bikeshop.service;
+
+import com.example.bikeshop.entity.Product;
+import com.example.bikeshop.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Component
+public class ProductSearchIndex {
+    // Thứ tự field: name, brand, category, description
+    private static final int FIELD_COUNT = 4;
+    private static final double[] FIELD_BOOSTS = {3.0, 2.0, 1.5, 1.0};
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final int MAX_PREFIX_EXPANSIONS = 50;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    // term -> (productId -> số lần xuất hiện theo từng field)
+    private final NavigableMap<String, Map<Long, int[]>> postings = new TreeMap<>();
+    // productId -> độ dài (số token) của từng field
+    private final Map<Long, int[]> fieldLengths = new HashMap<>();
+    // productId -> các term của sản phẩm, để xóa khỏi index mà không phải quét toàn bộ postings
+    private final Map<Long, Set<String>> documentTerms = new HashMap<>();
+    private final long[] totalFieldLengths = new long[FIELD_COUNT];
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Thay đổi đến trong lúc đang dựng lại (khác null khi đang dựng), giữ dưới write lock
+    private List<Runnable> pendingChanges;
+    private volatile boolean ready = false;
+
+    public record SearchResult(List<Long> productIds, long total) {
+    }
+
+    // Đọc sản phẩm từ DB không giữ lock; thay đổi commit trong lúc đó được ghi lại và áp lại lên bản dựng mới
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        write(() -> pendingChanges = new ArrayList<>());
+        List<Product> products;
+        try {
+            products = productRepository.findAll();
+        } catch (RuntimeException e) {
+            write(() -> pendingChanges = null);
+            throw e;
+        }
+        write(() -> {
+            postings.clear();
+            fieldLengths.clear();
+            documentTerms.clear();
+            Arrays.fill(totalFieldLengths, 0);
+            for (Product product : products) {
+                add(product.getId(), fields(product));
+            }
+            List<Runnable> changes = pendingChanges;
+            pendingChanges = null;
+            changes.forEach(Runnable::run);
+            ready = true;
+        });
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // Các thay đổi chỉ áp vào index sau khi transaction commit; nội dung sản phẩm được chụp lại ngay lúc gọi
+    public void index(Product product) {
+        if (product == null || product.getId() == null) {
+            return;
+        }
+        Long productId = product.getId();
+        String[] fields = fields(product);
+        afterCommit(() -> apply(() -> {
+            delete(productId);
+            add(productId, fields);
+        }));
+    }
+
+    public void remove(Long productId) {
+        afterCommit(() -> apply(() -> delete(productId)));
+    }
+
+    // Mọi từ khóa đều phải khớp (từ cuối khớp theo tiền tố để hỗ trợ gõ dần), xếp hạng theo BM25F
+    public SearchResult search(String keyword, int offset, int limit) {
+        List<String> terms = TextNormalizer.tokenize(keyword);
+        if (terms.isEmpty()) {
+            return new SearchResult(List.of(), 0);
+        }
+
+        lock.readLock().lock();
+        try {
+            int docCount = fieldLengths.size();
+            if (docCount == 0) {
+                return new SearchResult(List.of(), 0);
+            }
+            double[] avgLengths = new double[FIELD_COUNT];
+            for (int f = 0; f < FIELD_COUNT; f++) {
+                avgLengths[f] = Math.max(1.0, (double) totalFieldLengths[f] / docCount);
+            }
+
+            Map<Long, Double> scores = null;
+            List<String> distinctTerms = new ArrayList<>(new LinkedHashSet<>(terms));
+            for (int i = 0; i < distinctTerms.size(); i++) {
+                String term = distinctTerms.get(i);
+                boolean isLast = i == distinctTerms.size() - 1;
+                Map<Long, Double> termScores = scoreTerm(term, isLast, docCount, avgLengths);
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    scores.keySet().retainAll(termScores.keySet());
+                    for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                        entry.setValue(entry.getValue() + termScores.get(entry.getKey()));
+                    }
+                }
+                if (scores.isEmpty()) {
+                    return new SearchResult(List.of(), 0);
+                }
+            }
+
+            List<Map.Entry<Long, Double>> ranked = new ArrayList<>(scores.entrySet());
+            ranked.sort(Map.Entry.<Long, Double>comparingByValue().reversed()
+                    .thenComparing(Map.Entry.comparingByKey()));
+
+            List<Long> page = new ArrayList<>();
+            for (int i = offset; i < ranked.size() && page.size() < limit; i++) {
+                page.add(ranked.get(i).getKey());
+            }
+            return new SearchResult(page, ranked.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<Long, Double> scoreTerm(String term, boolean allowPrefix, int docCount, double[] avgLengths) {
+        Map<Long, Double> result = new HashMap<>();
+        Collection<Map.Entry<String, Map<Long, int[]>>> matches;
+        if (allowPrefix) {
+            matches = postings.subMap(term, true, term + Character.MAX_VALUE, false).entrySet();
+        } else {
+            Map<Long, int[]> exact = postings.get(term);
+            matches = exact == null ? List.of() : List.of(Map.entry(term, exact));
+        }
+
+        int expanded = 0;
+        for (Map.Entry<String, Map<Long, int[]>> match : matches) {
+            if (expanded++ >= MAX_PREFIX_EXPANSIONS) {
+                break;
+            }
+            // Khớp tiền tố thì điểm thấp hơn khớp nguyên từ
+            double weight = match.getKey().equals(term) ? 1.0 : 0.5;
+            Map<Long, int[]> docs = match.getValue();
+            double idf = Math.log(1 + (docCount - docs.size() + 0.5) / (docs.size() + 0.5));
+
+            for (Map.Entry<Long, int[]> doc : docs.entrySet()) {
+                int[] frequencies = doc.getValue();
+                int[] lengths = fieldLengths.get(doc.getKey());
+                double tf = 0;
+                for (int f = 0; f < FIELD_COUNT; f++) {
+                    if (frequencies[f] > 0) {
+                        tf += FIELD_BOOSTS[f] * frequencies[f] / (1 - B + B * lengths[f] / avgLengths[f]);
+                    }
+                }
+                double score = weight * idf * tf / (K1 + tf);
+                result.merge(doc.getKey(), score, Math::max);
+            }
+        }
+        return result;
+    }
+
+    private static String[] fields(Product product) {
+        return new String[]{product.getName(), product.getBrand(), product.getCategory(), product.getDescription()};
+    }
+
+    private void add(Long productId, String[] fields) {
+        int[] lengths = new int[FIELD_COUNT];
+        Set<String> terms = new HashSet<>();
+        for (int f = 0; f < FIELD_COUNT; f++) {
+            List<String> tokens = TextNormalizer.tokenize(fields[f]);
+            lengths[f] = tokens.size();
+            totalFieldLengths[f] += tokens.size();
+            for (String token : tokens) {
+                postings.computeIfAbsent(token, k -> new HashMap<>())
+                        .computeIfAbsent(productId, k -> new int[FIELD_COUNT])[f]++;
+                terms.add(token);
+            }
+        }
+        fieldLengths.put(productId, lengths);
+        documentTerms.put(productId, terms);
+    }
+
+    private void delete(Long productId) {
+        int[] lengths = fieldLengths.remove(productId);
+        if (lengths == null) {
+            return;
+        }
+        for (int f = 0; f < FIELD_COUNT; f++) {
+            totalFieldLengths[f] -= lengths[f];
+        }
+        for (String term : documentTerms.remove(productId)) {
+            Map<Long, int[]> docs = postings.get(term);
+            if (docs != null && docs.remove(productId) != null && docs.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    // Áp một thay đổi đã commit; đang dựng lại thì ghi lại để áp lần nữa lên bản dựng mới
+    private void apply(Runnable change) {
+        write(() -> {
+            change.run();
+            if (pendingChanges != null) {
+                pendingChanges.add(change);
+            }
+        });
+    }
+
+    private void write(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        } else {
+            change.run();
+        }
+    }
+}
@@ -1,21 +1,31 @@
 package com.example.bikeshop.service;
 
+import com.example.bikeshop.dto.CursorPage;
 import com.example.bikeshop.dto.ProductDTO;
+import com.example.bikeshop.dto.ProductFacetsDTO;
 import com.example.bikeshop.entity.Product;
 import com.example.bikeshop.repository.ProductRepository;
 import com.example.bikeshop.specification.ProductSpecification;
 import jakarta.servlet.http.HttpSession;
+import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -23,12 +33,34 @@ public class ProductService {
     @Autowired
     private ProductRepository productRepository;
 
+    // ImageService cũng dùng ProductService (lưu imageUrls), @Lazy để tránh vòng phụ thuộc
+    @Autowired
+    @Lazy
+    private ImageService imageService;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Autowired
+    private ProductFacetIndex productFacetIndex;
+
     private HttpSession session;
 
     public Page<Product> getAllProduct(Pageable pageable) {
         return productRepository.findAll(pageable);
     }
 
+    // Phân trang keyset theo id, không COUNT(*) và không OFFSET
+    public CursorPage<Product> getProductsAfter(String after, int size) {
+        int limit = CursorCodec.clampSize(size);
+        Long lastId = after == null ? 0L : CursorCodec.decode(after).id();
+        List<Product> rows = productRepository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, limit + 1));
+        return CursorPage.of(rows, limit, p -> CursorCodec.encode(p.getId()));
+    }
+
     public Page<Product> getProductsByCategory(String category, Pageable pageable) {
         return productRepository.findByCategory(category, pageable);
     }
@@ -38,12 +70,17 @@ public class ProductService {
     }
 
     public List<Product> createProducts(List<Product> products) {
-        return productRepository.saveAll(products);
+        List<Product> saved = productRepository.saveAll(products);
+        saved.forEach(this::reindex);
+        return saved;
     }
 
+    @Transactional
     public Product updateProduct(Long id, Product product) {
         Product existingProduct = productRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Product not found"));
+        // Thêm/bỏ URL ảnh thì thêm/bỏ tham chiếu tới file ảnh tương ứng
+        imageService.syncProductImages(existingProduct, existingProduct.getImageUrls(), product.getImageUrls());
         existingProduct.setName(product.getName());
         existingProduct.setCategory(product.getCategory());
         existingProduct.setPrice(product.getPrice());
@@ -52,17 +89,31 @@ public class ProductService {
         existingProduct.setQuantity(product.getQuantity());
         existingProduct.setColor(product.getColor());
         existingProduct.setImageUrls(product.getImageUrls());
-        return productRepository.save(existingProduct);
+        Product saved = productRepository.save(existingProduct);
+        reindex(saved);
+        return saved;
     }
 
+    @Transactional
     public void deleteProduct(Long id) {
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new NoSuchElementException("Không tìm thấy sản phẩm với ID: " + id));
+        // Ảnh không còn sản phẩm nào dùng được xóa khỏi BlobStore ở nền sau khi commit
+        imageService.releaseForProduct(product);
         productRepository.delete(product);
+        productSearchIndex.remove(id);
+        productFacetIndex.remove(id);
     }
 
     public Page<Product> filterProducts(String category, String brand, Double minPrice, Double maxPrice,
             Pageable pageable) {
+        // Lọc bằng giao các bitset trong bộ nhớ; chỉ khi cần sắp xếp hoặc index chưa sẵn sàng mới query DB
+        if (productFacetIndex.isReady() && pageable.getSort().isUnsorted()) {
+            ProductFacetIndex.FilterResult result = productFacetIndex.filter(
+                    category, brand, minPrice, maxPrice, (int) pageable.getOffset(), pageable.getPageSize());
+            return new PageImpl<>(findAllInOrder(result.productIds()), pageable, result.total());
+        }
+
         Specification<Product> spec = Specification.where(ProductSpecification.hasCategory(category))
                 .and(ProductSpecification.hasBrand(brand))
                 .and(ProductSpecification.hasPriceBetween(minPrice, maxPrice));
@@ -71,7 +122,24 @@ public class ProductService {
     }
 
     public Page<Product> searchProducts(String keyword, Pageable pageable) {
-        return productRepository.searchAllFields(keyword, pageable);
+        // Index chưa build xong (lúc mới khởi động) thì tạm dùng truy vấn LIKE cũ
+        if (!productSearchIndex.isReady()) {
+            return productRepository.searchAllFields(keyword, pageable);
+        }
+
+        // Từ khóa rỗng (LIKE '%%') thì trả về tất cả như trước
+        if (TextNormalizer.tokenize(keyword).isEmpty()) {
+            return productRepository.findAll(pageable);
+        }
+
+        ProductSearchIndex.SearchResult result = productSearchIndex.search(
+                keyword, (int) pageable.getOffset(), pageable.getPageSize());
+
+        return new PageImpl<>(findAllInOrder(result.productIds()), pageable, result.total());
+    }
+
+    public ProductFacetsDTO getFacets(String category, String brand, Double minPrice, Double maxPrice) {
+        return productFacetIndex.facets(category, brand, minPrice, maxPrice);
     }
 
     public ProductDTO save(ProductDTO dto) {
@@ -85,6 +153,7 @@ public class ProductService {
         product.setColor(Collections.singletonList(dto.getColor()));
 
         Product saved = productRepository.save(product);
+        reindex(saved);
 
         ProductDTO response = new ProductDTO();
         response.setId(saved.getId());
@@ -101,7 +170,25 @@ public class ProductService {
     }
 
     public Product saveEntity(Product product) {
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        reindex(saved);
+        return saved;
+    }
+
+    // Lấy sản phẩm của trang hiện tại trong một truy vấn, giữ nguyên thứ tự của index
+    private List<Product> findAllInOrder(List<Long> ids) {
+        Map<Long, Product> byId = productRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private void reindex(Product product) {
+        productSearchIndex.index(product);
+        productFacetIndex.index(product);
+        cartStore.refreshProduct(product);
     }
 
 }
\ No newline at end of file
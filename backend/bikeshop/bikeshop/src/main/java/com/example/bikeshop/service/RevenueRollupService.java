@@ -0,0 +1,129 @@
+package com.example.bikeshop.service;
+
+import com.example.bikeshop.entity.Order;
+import com.example.bikeshop.entity.OrderStatus;
+import com.example.bikeshop.repository.DailyRevenueRepository;
+import com.example.bikeshop.repository.OrderRepository;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Giữ bảng daily_revenue khớp với doanh thu các đơn DELIVERED.
+// Mỗi lần đơn vào/ra trạng thái DELIVERED chỉ cộng/trừ đúng một dòng theo ngày tạo đơn.
+@Service
+public class RevenueRollupService {
+    @Autowired
+    private DailyRevenueRepository dailyRevenueRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private RevenueSeriesService revenueSeriesService;
+
+    @Autowired
+    private DashboardCounters dashboardCounters;
+
+    @Value("${revenue.rollup.backfill:false}")
+    private boolean forceBackfill;
+
+    @Transactional
+    public void onStatusChanged(Order order, OrderStatus previous, OrderStatus next) {
+        if (previous != OrderStatus.DELIVERED && next == OrderStatus.DELIVERED) {
+            add(order.getCreatedAt(), order.getTotalPrice(), 1);
+        } else if (previous == OrderStatus.DELIVERED && next != OrderStatus.DELIVERED) {
+            add(order.getCreatedAt(), negate(order.getTotalPrice()), -1);
+        }
+    }
+
+    // Sửa đơn đã giao làm thay đổi tổng tiền
+    @Transactional
+    public void onTotalChanged(Order order, BigDecimal previousTotal) {
+        if (order.getStatus() != OrderStatus.DELIVERED) {
+            return;
+        }
+        BigDecimal current = order.getTotalPrice() != null ? order.getTotalPrice() : BigDecimal.ZERO;
+        BigDecimal delta = current.subtract(previousTotal != null ? previousTotal : BigDecimal.ZERO);
+        if (delta.signum() != 0) {
+            add(order.getCreatedAt(), delta, 0);
+        }
+    }
+
+    @Transactional
+    public void onDeleted(Order order) {
+        if (order.getStatus() == OrderStatus.DELIVERED) {
+            add(order.getCreatedAt(), negate(order.getTotalPrice()), -1);
+        }
+    }
+
+    // Doanh thu trong khoảng ngày [from, to)
+    public double revenueBetween(LocalDate from, LocalDate to) {
+        return dailyRevenueRepository.sumRevenueBetween(from, to).doubleValue();
+    }
+
+    // Tổng doanh thu DELIVERED, cộng từ bảng daily_revenue (mỗi ngày một dòng) thay vì quét bảng orders
+    public BigDecimal totalRevenue() {
+        return dailyRevenueRepository.sumRevenue();
+    }
+
+    // Backfill một lần: khi bảng còn trống (lần đầu triển khai) hoặc bật revenue.rollup.backfill=true.
+    // Chạy trước các listener khác, vì AdminDashboardService đối soát doanh thu từ bảng này lúc khởi động
+    @EventListener(ApplicationReadyEvent.class)
+    @org.springframework.core.annotation.Order(Ordered.HIGHEST_PRECEDENCE)
+    @Transactional
+    public void backfillIfNeeded() {
+        if (forceBackfill || dailyRevenueRepository.count() == 0) {
+            rebuild();
+        }
+    }
+
+    @Transactional
+    public void rebuild() {
+        dailyRevenueRepository.deleteAllInBatch();
+        for (Object[] row : orderRepository.sumDeliveredRevenueByDay()) {
+            LocalDate day = row[0] instanceof java.sql.Date date ? date.toLocalDate() : (LocalDate) row[0];
+            BigDecimal revenue = new BigDecimal(row[1].toString());
+            dailyRevenueRepository.add(day, revenue, ((Number) row[2]).longValue());
+        }
+        revenueSeriesService.evictAll();
+    }
+
+    private void add(LocalDateTime createdAt, BigDecimal amount, long orders) {
+        LocalDate day = (createdAt != null ? createdAt : LocalDateTime.now()).toLocalDate();
+        BigDecimal revenue = amount != null ? amount : BigDecimal.ZERO;
+        dailyRevenueRepository.add(day, revenue, orders);
+        revenueSeriesService.evict(day);
+        afterCommit(() -> {
+            // Xóa cache lần nữa sau commit, để request đọc song song không cache lại số liệu cũ
+            revenueSeriesService.evict(day);
+            dashboardCounters.addRevenue(revenue);
+        });
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private BigDecimal negate(BigDecimal amount) {
+        return amount != null ? amount.negate() : BigDecimal.ZERO;
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.bikeshop.service;
+
+import com.example.bikeshop.dto.RevenueByTimeResponse;
+import com.example.bikeshop.entity.DailyRevenue;
+import com.example.bikeshop.repository.DailyRevenueRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.IsoFields;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Chuỗi doanh thu theo ngày/tuần/tháng cho biểu đồ quản trị, lấy từ bảng daily_revenue bằng một truy vấn khoảng.
+// Kỳ đã kết thúc được cache lại; kỳ hiện tại luôn tính lại. Khi rollup của một ngày thay đổi
+// (ví dụ đơn cũ mới được giao) thì các kỳ chứa ngày đó bị xóa khỏi cache. Cache giữ tối đa
+// revenue.series.cache-max-buckets kỳ gần nhất.
+@Service
+public class RevenueSeriesService {
+    private static final int MAX_BUCKETS = 1000;
+
+    public enum Granularity {
+        DAY, WEEK, MONTH;
+
+        public static Granularity parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("granularity phải là day, week hoặc month");
+            }
+        }
+    }
+
+    private record BucketKey(Granularity granularity, LocalDate start) {
+    }
+
+    @Autowired
+    private DailyRevenueRepository dailyRevenueRepository;
+
+    private final Map<BucketKey, BigDecimal> closedBuckets;
+    // Tăng mỗi lần evict, để kết quả truy vấn chạy song song với một lần evict không được đưa lại vào cache
+    private final AtomicLong version = new AtomicLong();
+
+    public RevenueSeriesService(@Value("${revenue.series.cache-max-buckets:10000}") int maxBuckets) {
+        this.closedBuckets = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<BucketKey, BigDecimal> eldest) {
+                return size() > maxBuckets;
+            }
+        });
+    }
+
+    public List<RevenueByTimeResponse> getSeries(LocalDate from, LocalDate to, Granularity granularity) {
+        if (from == null || to == null || from.isAfter(to)) {
+            throw new IllegalArgumentException("Khoảng thời gian không hợp lệ");
+        }
+
+        List<LocalDate> starts = new ArrayList<>();
+        for (LocalDate start = bucketStart(from, granularity); !start.isAfter(to); start = next(start, granularity)) {
+            starts.add(start);
+            if (starts.size() > MAX_BUCKETS) {
+                throw new IllegalArgumentException("Khoảng thời gian quá dài, tối đa " + MAX_BUCKETS + " mốc");
+            }
+        }
+
+        LocalDate today = LocalDate.now();
+        Map<LocalDate, BigDecimal> sums = new HashMap<>();
+        LocalDate queryFrom = null;
+        LocalDate queryTo = null;
+        for (LocalDate start : starts) {
+            BigDecimal cached = closedBuckets.get(new BucketKey(granularity, start));
+            if (cached != null) {
+                sums.put(start, cached);
+            } else {
+                queryFrom = queryFrom == null ? start : queryFrom;
+                queryTo = next(start, granularity);
+            }
+        }
+
+        // Các kỳ chưa có trong cache được lấy bằng một truy vấn khoảng trên khóa chính revenue_date
+        if (queryFrom != null) {
+            long before = version.get();
+            Map<LocalDate, BigDecimal> fresh = new HashMap<>();
+            for (DailyRevenue row : dailyRevenueRepository.findByDayGreaterThanEqualAndDayLessThanOrderByDayAsc(queryFrom, queryTo)) {
+                fresh.merge(bucketStart(row.getDay(), granularity), row.getRevenue(), BigDecimal::add);
+            }
+            for (LocalDate start : starts) {
+                if (sums.containsKey(start) || start.isBefore(queryFrom) || !start.isBefore(queryTo)) {
+                    continue;
+                }
+                BigDecimal total = fresh.getOrDefault(start, BigDecimal.ZERO);
+                sums.put(start, total);
+                if (!next(start, granularity).isAfter(today)) {
+                    synchronized (closedBuckets) {
+                        if (version.get() == before) {
+                            closedBuckets.put(new BucketKey(granularity, start), total);
+                        }
+                    }
+                }
+            }
+        }
+
+        List<RevenueByTimeResponse> series = new ArrayList<>(starts.size());
+        for (LocalDate start : starts) {
+            series.add(new RevenueByTimeResponse(label(start, granularity), sums.getOrDefault(start, BigDecimal.ZERO)));
+        }
+        return series;
+    }
+
+    // Gọi khi dòng daily_revenue của một ngày thay đổi
+    public void evict(LocalDate day) {
+        synchronized (closedBuckets) {
+            version.incrementAndGet();
+            for (Granularity granularity : Granularity.values()) {
+                closedBuckets.remove(new BucketKey(granularity, bucketStart(day, granularity)));
+            }
+        }
+    }
+
+    public void evictAll() {
+        synchronized (closedBuckets) {
+            version.incrementAndGet();
+            closedBuckets.clear();
+        }
+    }
+
+    private LocalDate bucketStart(LocalDate day, Granularity granularity) {
+        return switch (granularity) {
+            case DAY -> day;
+            case WEEK -> day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTH -> day.withDayOfMonth(1);
+        };
+    }
+
+    private LocalDate next(LocalDate start, Granularity granularity) {
+        return switch (granularity) {
+            case DAY -> start.plusDays(1);
+            case WEEK -> start.plusWeeks(1);
+            case MONTH -> start.plusMonths(1);
+        };
+    }
+
+    // Nhãn: 2025-03-07, 2025-W10 (tuần ISO), 2025-03
+    private String label(LocalDate start, Granularity granularity) {
+        return switch (granularity) {
+            case DAY -> start.toString();
+            case WEEK -> String.format("%d-W%02d", start.get(IsoFields.WEEK_BASED_YEAR),
+                    start.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+            case MONTH -> String.format("%d-%02d", start.getYear(), start.getMonthValue());
+        };
+    }
+}
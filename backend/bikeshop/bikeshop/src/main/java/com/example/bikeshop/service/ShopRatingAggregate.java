@@ -0,0 +1,125 @@
+package com.example.bikeshop.service;
+
+import com.example.bikeshop.repository.ShopReviewRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Histogram số sao của đánh giá shop, giữ trong bộ nhớ thay cho AVG/GROUP BY trên shop_reviews mỗi lần xem.
+// Cập nhật theo từng thay đổi sau khi commit; nạp lại từ DB lúc khởi động và định kỳ để sửa sai lệch nếu có.
+@Component
+public class ShopRatingAggregate {
+    private static final int MIN_RATING = 1;
+    private static final int MAX_RATING = 5;
+
+    @Autowired
+    private ShopReviewRepository shopReviewRepository;
+
+    // counts[r] = số đánh giá r sao (chỉ số 0 không dùng)
+    private final AtomicLongArray counts = new AtomicLongArray(MAX_RATING + 1);
+    // Tổng số sao và số đánh giá, tính cả rating ngoài 1..5 nếu có trong dữ liệu cũ, để khớp với AVG(rating)
+    private final AtomicLong ratingSum = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    // Tăng mỗi lần có thay đổi, để lần nạp lại chạy song song với một thay đổi không ghi đè kết quả
+    private final AtomicLong version = new AtomicLong();
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${review.stats.reconcile-ms:600000}", initialDelayString = "${review.stats.reconcile-ms:600000}")
+    public void rebuild() {
+        long before = version.get();
+        List<Object[]> rows = shopReviewRepository.findRatingCounts();
+        long[] fresh = new long[MAX_RATING + 1];
+        long sum = 0;
+        long count = 0;
+        for (Object[] row : rows) {
+            int rating = (Integer) row[0];
+            long ratingCount = (Long) row[1];
+            if (rating >= MIN_RATING && rating <= MAX_RATING) {
+                fresh[rating] = ratingCount;
+            }
+            sum += rating * ratingCount;
+            count += ratingCount;
+        }
+        synchronized (this) {
+            if (version.get() != before) {
+                // Có đánh giá thay đổi trong lúc đọc: để lần sau nạp lại
+                return;
+            }
+            for (int rating = MIN_RATING; rating <= MAX_RATING; rating++) {
+                counts.set(rating, fresh[rating]);
+            }
+            ratingSum.set(sum);
+            total.set(count);
+        }
+    }
+
+    public void onCreated(int rating) {
+        afterCommit(() -> apply(rating, 1));
+    }
+
+    public void onUpdated(int oldRating, int newRating) {
+        if (oldRating == newRating) {
+            return;
+        }
+        afterCommit(() -> {
+            apply(oldRating, -1);
+            apply(newRating, 1);
+        });
+    }
+
+    public void onDeleted(int rating) {
+        afterCommit(() -> apply(rating, -1));
+    }
+
+    public double average() {
+        long count = total.get();
+        return count == 0 ? 0.0 : (double) ratingSum.get() / count;
+    }
+
+    public long total() {
+        return total.get();
+    }
+
+    // Số đánh giá theo từng mức 1..5 sao
+    public Map<Integer, Long> starCounts() {
+        Map<Integer, Long> result = new LinkedHashMap<>();
+        for (int rating = MIN_RATING; rating <= MAX_RATING; rating++) {
+            result.put(rating, counts.get(rating));
+        }
+        return result;
+    }
+
+    private void apply(int rating, int delta) {
+        synchronized (this) {
+            version.incrementAndGet();
+            if (rating >= MIN_RATING && rating <= MAX_RATING) {
+                counts.addAndGet(rating, delta);
+            }
+            ratingSum.addAndGet((long) rating * delta);
+            total.addAndGet(delta);
+        }
+    }
+
+    private void afterCommit(Runnable change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    change.run();
+                }
+            });
+        } else {
+            change.run();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.bikeshop.service;
 
+import com.example.bikeshop.config.SchemaMigrations;
+import com.example.bikeshop.dto.CursorPage;
 import com.example.bikeshop.dto.ShopReviewRequest;
 import com.example.bikeshop.dto.ShopReviewResponse;
 import com.example.bikeshop.dto.ShopReviewStatsDTO;
@@ -9,14 +11,16 @@ import com.example.bikeshop.repository.ShopReviewRepository;
 import com.example.bikeshop.specification.ShopReviewSpecification;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,6 +29,10 @@ public class ShopReviewService {
     private ShopReviewRepository reviewRepository;
     @Autowired
     private ShopReviewRepository shopReviewRepository;
+    @Autowired
+    private ShopRatingAggregate ratingAggregate;
+    @Autowired
+    private SchemaMigrations schemaMigrations;
 
     public ShopReviewResponse createReview(ShopReviewRequest req, User user) {
         ShopReview review = new ShopReview();
@@ -33,6 +41,7 @@ public class ShopReviewService {
         review.setUser(user);
 
         review = reviewRepository.save(review);
+        ratingAggregate.onCreated(review.getRating());
         return toResponse(review);
     }
 
@@ -50,6 +59,20 @@ public class ShopReviewService {
     }
 
 
+    public CursorPage<ShopReviewResponse> getReviewsAfter(String after, int size) {
+        int limit = CursorCodec.clampSize(size);
+        Pageable pageable = PageRequest.of(0, limit + 1);
+        List<ShopReview> rows;
+        if (after == null) {
+            rows = reviewRepository.findLatest(pageable);
+        } else {
+            CursorCodec.Cursor cursor = CursorCodec.decode(after);
+            rows = reviewRepository.findLatestBefore(cursor.keyAsDateTime(), cursor.id(), pageable);
+        }
+        return CursorPage.of(rows, limit, r -> CursorCodec.encode(r.getCreatedAt(), r.getId()))
+                .map(this::convertToResponse);
+    }
+
     public ShopReviewResponse updateReview(Long id, ShopReviewRequest req, User user) {
         ShopReview review = reviewRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Review not found"));
@@ -58,10 +81,13 @@ public class ShopReviewService {
             throw new RuntimeException("Not allowed");
         }
 
+        int oldRating = review.getRating();
         review.setComment(req.getComment());
         review.setRating(req.getRating());
 
-        return toResponse(reviewRepository.save(review));
+        review = reviewRepository.save(review);
+        ratingAggregate.onUpdated(oldRating, review.getRating());
+        return toResponse(review);
     }
 
     public void deleteReview(Long id, User user) {
@@ -72,6 +98,7 @@ public class ShopReviewService {
             throw new RuntimeException("Not allowed");
         }
         reviewRepository.delete(review);
+        ratingAggregate.onDeleted(review.getRating());
     }
 
     public List<ShopReviewResponse> getReviewsByUser(Long userId) {
@@ -82,8 +109,7 @@ public class ShopReviewService {
     }
 
     public Double getAverageRating() {
-        Double avgRating = reviewRepository.findAverageRating();
-        return avgRating != null ? avgRating : 0.0;
+        return ratingAggregate.average();
     }
 
     public boolean hasReviewed(Long userId) {
@@ -106,27 +132,22 @@ public class ShopReviewService {
     }
 
     public ShopReviewStatsDTO getReviewStats() {
-        Double avg = shopReviewRepository.findAverageRating();
-        double average = avg != null ? Math.round(avg * 10.0) / 10.0 : 0.0;
-
-        List<Object[]> counts = shopReviewRepository.findRatingCounts();
-        Map<Integer, Long> starCounts = new HashMap<>();
-        for (int i = 1; i <= 5; i++) {
-            starCounts.put(i, 0L);
-        }
-
-        for (Object[] row : counts) {
-            Integer rating = (Integer) row[0];
-            Long count = (Long) row[1];
-            starCounts.put(rating, count);
-        }
-
-        long totalReviews = starCounts.values().stream().mapToLong(Long::longValue).sum();
-
-        return new ShopReviewStatsDTO(average, totalReviews, starCounts);
+        // Đọc từ histogram trong bộ nhớ, không truy vấn shop_reviews
+        double average = Math.round(ratingAggregate.average() * 10.0) / 10.0;
+        return new ShopReviewStatsDTO(average, ratingAggregate.total(), ratingAggregate.starCounts());
     }
 
     public Page<ShopReviewResponse> searchReviews(Integer rating, String keyword, Pageable pageable) {
+        // MySQL có index FULLTEXT thì tìm bằng MATCH ... AGAINST, không quét cả bảng bằng LIKE
+        String phrase = TextNormalizer.fulltextPhrase(keyword);
+        if (phrase != null && schemaMigrations.isFulltextAvailable()) {
+            Page<Long> ids = shopReviewRepository.searchIdsFulltext(phrase, keyword.trim(), rating, pageable);
+            Map<Long, ShopReview> byId = shopReviewRepository.findByIdIn(ids.getContent()).stream()
+                    .collect(Collectors.toMap(ShopReview::getId, Function.identity()));
+            List<ShopReview> rows = ids.getContent().stream().map(byId::get).filter(Objects::nonNull).toList();
+            return new PageImpl<>(rows, pageable, ids.getTotalElements()).map(this::convertToResponse);
+        }
+
         Specification<ShopReview> spec = Specification.where(ShopReviewSpecification.hasRating(rating))
                 .and(ShopReviewSpecification.containsKeyword(keyword));
 
@@ -0,0 +1,46 @@
+package com.example.bikeshop.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+public final class TextNormalizer {
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private TextNormalizer() {
+    }
+
+    // Bỏ dấu tiếng Việt và chuyển về chữ thường: "Xe Đạp Gấp" -> "xe dap gap"
+    public static String fold(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        String lower = text.toLowerCase(Locale.ROOT).replace('đ', 'd');
+        String decomposed = Normalizer.normalize(lower, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("");
+    }
+
+    // Tách từ theo ký tự không phải chữ/số, nên "xe_gap" cũng thành ["xe", "gap"]
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : TOKEN_SEPARATOR.split(fold(text))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    // Từ khóa thành một cụm trong ngoặc kép cho MATCH ... AGAINST (BOOLEAN MODE), để khớp liền mạch như LIKE.
+    // null nếu ngắn hơn một token ngram (2 ký tự) - khi đó phải tìm bằng LIKE
+    public static String fulltextPhrase(String keyword) {
+        if (keyword == null) {
+            return null;
+        }
+        String cleaned = keyword.replace("\"", " ").trim();
+        return cleaned.length() < 2 ? null : "\"" + cleaned + "\"";
+    }
+}
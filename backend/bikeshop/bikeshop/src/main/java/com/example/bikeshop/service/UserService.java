@@ -1,5 +1,6 @@
 package com.example.bikeshop.service;
 
+import com.example.bikeshop.dto.CursorPage;
 import com.example.bikeshop.dto.UserDTO;
 import com.example.bikeshop.entity.Product;
 import com.example.bikeshop.entity.User;
@@ -63,6 +64,13 @@ public class UserService {
         return userRepository.findAll(pageable);
     }
 
+    public CursorPage<User> getUsersAfter(String after, int size) {
+        int limit = CursorCodec.clampSize(size);
+        Long lastId = after == null ? 0L : CursorCodec.decode(after).id();
+        List<User> rows = userRepository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, limit + 1));
+        return CursorPage.of(rows, limit, u -> CursorCodec.encode(u.getId()));
+    }
+
     public void updateUserInfo(Long currentUserId, Long targetUserId, UserDTO updatedUserDTO) {
         User currentUser = userRepository.findById(currentUserId)
                 .orElseThrow(() -> new RuntimeException("Không tìm thấy current user"));
@@ -0,0 +1,113 @@
+package com.example.bikeshop.service;
+
+import com.example.bikeshop.repository.WishlistRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Tập productId trong wishlist của từng user, giữ dưới dạng mảng long đã sắp xếp để kiểm tra bằng binarySearch.
+// Mảng không bao giờ bị sửa tại chỗ: thêm/xóa tạo mảng mới, nên đọc không cần khóa.
+// Chỉ đọc DB lần đầu gặp user (hoặc sau khi bị đẩy khỏi cache); giữ tối đa wishlist.cache.max-users user gần nhất.
+@Component
+public class WishlistMembershipCache {
+
+    @Autowired
+    private WishlistRepository wishlistRepository;
+
+    private final Map<Long, long[]> members;
+    // Tăng mỗi lần có thay đổi, để bản nạp từ DB chạy song song với một thay đổi không ghi đè kết quả mới hơn
+    private final AtomicLong version = new AtomicLong();
+
+    public WishlistMembershipCache(@Value("${wishlist.cache.max-users:10000}") int maxUsers) {
+        this.members = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, long[]> eldest) {
+                return size() > maxUsers;
+            }
+        });
+    }
+
+    public boolean contains(Long userId, Long productId) {
+        return Arrays.binarySearch(productIds(userId), productId) >= 0;
+    }
+
+    // Trả về các productId (theo thứ tự gửi lên) đang nằm trong wishlist
+    public List<Long> filterWishlisted(Long userId, Collection<Long> productIds) {
+        long[] ids = productIds(userId);
+        List<Long> result = new ArrayList<>();
+        for (Long productId : productIds) {
+            if (productId != null && Arrays.binarySearch(ids, productId) >= 0) {
+                result.add(productId);
+            }
+        }
+        return result;
+    }
+
+    public void added(Long userId, Long productId) {
+        afterCommit(() -> members.computeIfPresent(userId, (id, ids) -> {
+            int position = Arrays.binarySearch(ids, productId);
+            if (position >= 0) {
+                return ids;
+            }
+            int insertAt = -(position + 1);
+            long[] copy = new long[ids.length + 1];
+            System.arraycopy(ids, 0, copy, 0, insertAt);
+            copy[insertAt] = productId;
+            System.arraycopy(ids, insertAt, copy, insertAt + 1, ids.length - insertAt);
+            return copy;
+        }));
+    }
+
+    public void removed(Long userId, Long productId) {
+        afterCommit(() -> members.computeIfPresent(userId, (id, ids) -> {
+            int position = Arrays.binarySearch(ids, productId);
+            if (position < 0) {
+                return ids;
+            }
+            long[] copy = new long[ids.length - 1];
+            System.arraycopy(ids, 0, copy, 0, position);
+            System.arraycopy(ids, position + 1, copy, position, ids.length - position - 1);
+            return copy;
+        }));
+    }
+
+    private long[] productIds(Long userId) {
+        long[] ids = members.get(userId);
+        if (ids != null) {
+            return ids;
+        }
+        long before = version.get();
+        ids = wishlistRepository.findProductIdsByUserId(userId).stream().mapToLong(Long::longValue).sorted().toArray();
+        // Kiểm tra và ghi cùng khóa với lúc áp dụng thay đổi, để thay đổi không chen vào giữa hai bước
+        synchronized (members) {
+            if (version.get() == before) {
+                members.putIfAbsent(userId, ids);
+            }
+        }
+        return ids;
+    }
+
+    private void afterCommit(Runnable change) {
+        Runnable apply = () -> {
+            synchronized (members) {
+                version.incrementAndGet();
+                change.run();
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+}
@@ -5,14 +5,14 @@ import com.example.bikeshop.dto.WishlistResponseDTO;
 import com.example.bikeshop.entity.Product;
 import com.example.bikeshop.entity.User;
 import com.example.bikeshop.entity.WishlistItem;
-import com.example.bikeshop.repository.ProductRepository;
 import com.example.bikeshop.repository.UserRepository;
 import com.example.bikeshop.repository.WishlistRepository;
+import jakarta.transaction.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
-import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,7 +25,7 @@ public class WishlistService {
     private UserRepository userRepository;
 
     @Autowired
-    private ProductRepository productRepository;
+    private WishlistMembershipCache membershipCache;
 
     public WishlistResponseDTO getWishlistByUserId(Long userId) {
         User user = userRepository.findById(userId)
@@ -48,24 +48,35 @@ public class WishlistService {
         return new WishlistResponseDTO(user.getFullName(), itemDTOs);
     }
 
+    // Một câu lệnh duy nhất, không nạp user/product; id không tồn tại sẽ bị khóa ngoại chặn,
+    // khi đó mới tra lại để báo lỗi như trước
+    @Transactional
     public String addToWishlist(Long userId, Long productId) {
-        Optional<WishlistItem> existing = wishlistRepository.findByUserIdAndProductId(userId, productId);
-        if (existing.isPresent()) {
+        if (membershipCache.contains(userId, productId)) {
             return "⚠️ Sản phẩm đã có trong danh sách yêu thích";
         }
-
-        User user = userRepository.findById(userId).orElseThrow();
-        Product product = productRepository.findById(productId).orElseThrow();
-
-        WishlistItem item = new WishlistItem();
-        item.setUser(user);
-        item.setProduct(product);
-        wishlistRepository.save(item);
-
+        try {
+            wishlistRepository.upsert(userId, productId);
+        } catch (DataIntegrityViolationException e) {
+            if (!userRepository.existsById(userId)) {
+                throw new RuntimeException("User không tồn tại");
+            }
+            throw new RuntimeException("Sản phẩm không tồn tại");
+        }
+        membershipCache.added(userId, productId);
         return "✅ Đã thêm vào danh sách yêu thích";
     }
 
+    // Kiểm tra hàng loạt cho các thẻ sản phẩm, trả về các productId đã có trong wishlist
+    public List<Long> findWishlisted(Long userId, List<Long> productIds) {
+        return membershipCache.filterWishlisted(userId, productIds);
+    }
+
+    @Transactional
     public void removeFromWishlist(Long itemId) {
-        wishlistRepository.deleteById(itemId);
+        wishlistRepository.findById(itemId).ifPresent(item -> {
+            wishlistRepository.delete(item);
+            membershipCache.removed(item.getUser().getId(), item.getProduct().getId());
+        });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,21 @@
+package com.example.bikeshop.specification;
+
+import com.example.bikeshop.entity.ProductReview;
+import org.springframework.data.jpa.domain.Specification;
+
+public class ProductReviewSpecification {
+    public static Specification<ProductReview> forProduct(Long productId) {
+        return (root, query, cb) -> productId == null ? null : cb.equal(root.get("product").get("id"), productId);
+    }
+
+    public static Specification<ProductReview> containsKeyword(String keyword) {
+        return (root, query, cb) -> {
+            if (keyword == null || keyword.isEmpty()) return null;
+            String likePattern = "%" + keyword.toLowerCase() + "%";
+            return cb.or(
+                    cb.like(cb.lower(root.get("comment")), likePattern),
+                    cb.like(cb.lower(root.get("answer")), likePattern)
+            );
+        };
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.bikeshop.config;
+
+import com.example.bikeshop.entity.Order;
+import com.example.bikeshop.entity.OrderItem;
+import com.example.bikeshop.entity.Product;
+import com.example.bikeshop.entity.ShopReview;
+import com.example.bikeshop.entity.User;
+import com.example.bikeshop.repository.OrderRepository;
+import com.example.bikeshop.repository.ProductRepository;
+import com.example.bikeshop.repository.ShopReviewRepository;
+import com.example.bikeshop.repository.UserRepository;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = {
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "fetch-guard.mode=strict"
+})
+@Import({FetchPlanGuard.class, EntityGraphRecorder.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FetchPlanGuardTest {
+
+    @Autowired
+    private FetchPlanGuard fetchPlanGuard;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ShopReviewRepository shopReviewRepository;
+
+    @Test
+    void reportsLazyLoadOutsideFetchPlan() {
+        User user = saveUser("an");
+        ShopReview review = new ShopReview();
+        review.setComment("Giao hàng nhanh");
+        review.setRating(5);
+        review.setUser(user);
+        Long reviewId = shopReviewRepository.save(review).getId();
+
+        // findById không có entity graph, user là proxy lazy
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> inRequest(() ->
+                shopReviewRepository.findById(reviewId).orElseThrow().getUser().getUsername()));
+        assertTrue(e.getMessage().contains(User.class.getName()), e.getMessage());
+    }
+
+    @Test
+    void allowsGraphAndBatchSizeLoads() {
+        User user = saveUser("binh");
+        Product product = new Product();
+        product.setName("Xe đạp địa hình");
+        product.setPrice(5_000_000.0);
+        product.setQuantity(10);
+        productRepository.save(product);
+
+        Order order = new Order();
+        order.setUser(user);
+        OrderItem item = new OrderItem();
+        item.setQuantity(1);
+        item.setPriceAtOrder(5_000_000.0);
+        item.setProduct(productRepository.getReferenceById(product.getId()));
+        item.setOrder(order);
+        order.getItems().add(item);
+        orderRepository.save(order);
+
+        // order-summary lấy user; items và product của item có @BatchSize
+        assertDoesNotThrow(() -> inRequest(() -> {
+            List<Order> orders = orderRepository.findAll(PageRequest.of(0, 10)).getContent();
+            for (Order o : orders) {
+                o.getUser().getUsername();
+                o.getItems().forEach(i -> i.getProduct().getName());
+            }
+            return orders.size();
+        }));
+    }
+
+    private User saveUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        return userRepository.save(user);
+    }
+
+    // Chạy như một request đi qua filter, trong một transaction để lazy load được
+    private void inRequest(Supplier<Object> action) throws Exception {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        FilterChain chain = (request, response) -> transaction.execute(status -> action.get());
+        fetchPlanGuard.doFilter(new MockHttpServletRequest("GET", "/test"), new MockHttpServletResponse(), chain);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.bikeshop.repository;
+
+import com.example.bikeshop.config.SchemaMigrations;
+import com.example.bikeshop.entity.ShopReview;
+import com.example.bikeshop.entity.User;
+import com.example.bikeshop.service.TextNormalizer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Tìm kiếm FULLTEXT chỉ chạy trên MySQL nên kiểm tra bằng MySQL thật; bỏ qua khi máy không có Docker
+@Testcontainers(disabledWithoutDocker = true)
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.MySQLDialect")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ImportAutoConfiguration(JdbcTemplateAutoConfiguration.class)
+@Import(SchemaMigrations.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ShopReviewFulltextMySqlTest {
+
+    @Container
+    static MySQLContainer<?> mysql = new MySQLContainer<>("mysql:8.0");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", mysql::getJdbcUrl);
+        registry.add("spring.datasource.username", mysql::getUsername);
+        registry.add("spring.datasource.password", mysql::getPassword);
+    }
+
+    @Autowired
+    private SchemaMigrations schemaMigrations;
+
+    @Autowired
+    private ShopReviewRepository shopReviewRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void findsPhrasesMadeOfStopwordBigrams() {
+        assertTrue(schemaMigrations.isFulltextAvailable());
+        User user = saveUser("khachquen");
+        Long id = saveReview(user, "Giao hàng an toàn, đóng gói kỹ", 5);
+        saveReview(user, "Xe đạp đi êm", 4);
+
+        List<Long> ids = search("an toàn", null);
+
+        assertEquals(List.of(id), ids);
+    }
+
+    @Test
+    void matchesCommentOrUsernameOnceAndAppliesRating() {
+        User fan = saveUser("xedapfan");
+        User other = saveUser("nguoimua");
+        Long both = saveReview(fan, "xedapfan rất hài lòng", 5);
+        Long byName = saveReview(fan, "Sẽ quay lại", 3);
+        Long byComment = saveReview(other, "Cảm ơn xedapfan đã tư vấn", 5);
+        saveReview(other, "Bình thường", 5);
+
+        assertEquals(List.of(byComment, byName, both), search("xedapfan", null));
+        assertEquals(List.of(byComment, both), search("xedapfan", 5));
+    }
+
+    private List<Long> search(String keyword, Integer rating) {
+        return shopReviewRepository.searchIdsFulltext(TextNormalizer.fulltextPhrase(keyword), keyword, rating,
+                PageRequest.of(0, 10)).getContent();
+    }
+
+    private User saveUser(String username) {
+        User user = new User();
+        user.setUsername(username);
+        return userRepository.save(user);
+    }
+
+    private Long saveReview(User user, String comment, int rating) {
+        ShopReview review = new ShopReview();
+        review.setUser(user);
+        review.setComment(comment);
+        review.setRating(rating);
+        return shopReviewRepository.save(review).getId();
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.bikeshop.service;
+
+import com.example.bikeshop.exception.InvalidImageException;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageValidatorTest {
+
+    private final ImageValidator validator = new ImageValidator(12000, 12000, 50_000_000);
+
+    @Test
+    void readsDimensionsOfEncodedImages() throws IOException {
+        assertEquals(new ImageValidator.ImageInfo("jpeg", 320, 200), validate(encode("jpg", 320, 200)));
+        assertEquals(new ImageValidator.ImageInfo("png", 64, 48), validate(encode("png", 64, 48)));
+        assertEquals(new ImageValidator.ImageInfo("gif", 17, 9), validate(encode("gif", 17, 9)));
+    }
+
+    @Test
+    void readsDimensionsOfWebpHeaders() {
+        assertEquals(new ImageValidator.ImageInfo("webp", 800, 600), validate(vp8(800, 600)));
+        assertEquals(new ImageValidator.ImageInfo("webp", 1024, 768), validate(vp8l(1024, 768)));
+        assertEquals(new ImageValidator.ImageInfo("webp", 4000, 3000), validate(vp8x(4000, 3000)));
+    }
+
+    @Test
+    void rejectsTruncatedJpeg() throws IOException {
+        byte[] jpeg = encode("jpg", 320, 200);
+        // Cắt giữa các segment trước SOF (bảng lượng tử DQT)
+        byte[] truncated = Arrays.copyOf(jpeg, 100);
+
+        assertThrows(InvalidImageException.class, () -> validate(truncated));
+    }
+
+    @Test
+    void skipsLargeSegmentsBeforeStartOfFrame() throws IOException {
+        byte[] jpeg = encode("jpg", 320, 200);
+        // EXIF/ICC lớn (nhiều segment APP1 tối đa 64 KB) trước SOF vẫn đọc được kích thước
+        byte[] withExif = withAppSegments(jpeg, 8);
+        assertEquals(new ImageValidator.ImageInfo("jpeg", 320, 200), validate(withExif));
+
+        // Quá giới hạn quét mà chưa thấy SOF thì từ chối
+        byte[] tooMuch = withAppSegments(jpeg, 40);
+        assertThrows(InvalidImageException.class, () -> validate(tooMuch));
+    }
+
+    @Test
+    void rejectsDeclaredDimensionsOverLimits() {
+        // Mỗi chiều dưới giới hạn nhưng tổng số điểm ảnh vượt max-pixels
+        InvalidImageException tooManyPixels = assertThrows(InvalidImageException.class,
+                () -> validate(pngHeader(10000, 10000)));
+        assertTrue(tooManyPixels.getMessage().contains("10000x10000"));
+
+        assertThrows(InvalidImageException.class, () -> validate(vp8x(16000, 100)));
+        assertThrows(InvalidImageException.class, () -> validate(pngHeader(0, 100)));
+    }
+
+    @Test
+    void rejectsUnknownFormat() {
+        assertThrows(InvalidImageException.class, () -> validate("không phải ảnh".getBytes()));
+    }
+
+    private ImageValidator.ImageInfo validate(byte[] content) {
+        return validator.validate(new MockMultipartFile("file", "anh", "application/octet-stream", content));
+    }
+
+    private static byte[] encode(String format, int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(image, format, out));
+        return out.toByteArray();
+    }
+
+    // Chèn count segment APP1 đầy (65535 byte) ngay sau SOI
+    private static byte[] withAppSegments(byte[] jpeg, int count) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(jpeg, 0, 2);
+        byte[] payload = new byte[65533];
+        for (int i = 0; i < count; i++) {
+            out.write(0xFF);
+            out.write(0xE1);
+            out.write(0xFF);
+            out.write(0xFF);
+            out.write(payload, 0, payload.length);
+        }
+        out.write(jpeg, 2, jpeg.length - 2);
+        return out.toByteArray();
+    }
+
+    private static byte[] pngHeader(int width, int height) {
+        ByteBuffer buffer = ByteBuffer.allocate(33).order(ByteOrder.BIG_ENDIAN);
+        buffer.put(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'});
+        buffer.putInt(13).put("IHDR".getBytes()).putInt(width).putInt(height);
+        return buffer.array();
+    }
+
+    private static ByteBuffer webp(String chunk) {
+        ByteBuffer buffer = ByteBuffer.allocate(30).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put("RIFF".getBytes()).putInt(22).put("WEBP".getBytes()).put(chunk.getBytes()).putInt(10);
+        return buffer;
+    }
+
+    private static byte[] vp8(int width, int height) {
+        ByteBuffer buffer = webp("VP8 ");
+        // frame tag (key frame), start code, rồi rộng/cao 14 bit
+        buffer.put(new byte[]{0x10, 0x02, 0x00, (byte) 0x9D, 0x01, 0x2A});
+        buffer.putShort((short) width).putShort((short) height);
+        return buffer.array();
+    }
+
+    private static byte[] vp8l(int width, int height) {
+        ByteBuffer buffer = webp("VP8L");
+        buffer.put((byte) 0x2F).putInt((width - 1) | (height - 1) << 14);
+        return buffer.array();
+    }
+
+    private static byte[] vp8x(int width, int height) {
+        ByteBuffer buffer = webp("VP8X");
+        buffer.put(new byte[4]);
+        buffer.put((byte) (width - 1)).put((byte) ((width - 1) >> 8)).put((byte) ((width - 1) >> 16));
+        buffer.put((byte) (height - 1)).put((byte) ((height - 1) >> 8)).put((byte) ((height - 1) >> 16));
+        return buffer.array();
+    }
+}
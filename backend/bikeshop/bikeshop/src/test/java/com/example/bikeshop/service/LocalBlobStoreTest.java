@@ -0,0 +1,50 @@
+package com.example.bikeshop.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalBlobStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void storesInShardedDirectoryAndReadsBack() throws IOException {
+        LocalBlobStore store = new LocalBlobStore(dir.toString(), "http://localhost:8081/api/blobs/");
+
+        BlobStore.StoredBlob blob = store.put("Xe Dap.JPG", new ByteArrayInputStream(new byte[]{1, 2, 3}));
+
+        assertTrue(blob.id().endsWith(".jpg"));
+        assertEquals("http://localhost:8081/api/blobs/" + blob.id(), blob.url());
+        Path file = dir.resolve(blob.id().substring(0, 2)).resolve(blob.id().substring(2, 4)).resolve(blob.id());
+        assertTrue(Files.isRegularFile(file));
+        try (InputStream in = store.open(blob.id())) {
+            assertArrayEquals(new byte[]{1, 2, 3}, in.readAllBytes());
+        }
+        try (var leftovers = Files.list(dir.resolve("tmp"))) {
+            assertEquals(0, leftovers.count());
+        }
+
+        store.delete(blob.id());
+        assertThrows(NoSuchFileException.class, () -> store.open(blob.id()));
+    }
+
+    @Test
+    void rejectsIdsOutsideTheStore() throws IOException {
+        LocalBlobStore store = new LocalBlobStore(dir.toString(), "http://localhost:8081/api/blobs/");
+        Files.writeString(dir.resolve("secret.txt"), "x");
+
+        assertThrows(IOException.class, () -> store.open("../secret.txt"));
+        store.delete("../secret.txt");
+        assertTrue(Files.exists(dir.resolve("secret.txt")));
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.bikeshop.service;
+
+import com.example.bikeshop.dto.CreateOrderRequest;
+import com.example.bikeshop.dto.ShippingInfoRequest;
+import com.example.bikeshop.entity.Order;
+import com.example.bikeshop.entity.OrderStatus;
+import com.example.bikeshop.entity.Product;
+import com.example.bikeshop.entity.User;
+import com.example.bikeshop.exception.InsufficientStockException;
+import com.example.bikeshop.repository.OrderRepository;
+import com.example.bikeshop.repository.ProductRepository;
+import com.example.bikeshop.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Tạo đơn, hủy và mở lại đơn song song qua OrderService: kho không bao giờ âm và luôn khớp với các đơn đang giữ hàng
+@DataJpaTest(properties = "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect")
+@Import({OrderService.class, InventoryService.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderServiceConcurrencyTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockitoBean
+    private PendingOrderTimerWheel pendingOrderTimerWheel;
+
+    @MockitoBean
+    private RevenueRollupService revenueRollupService;
+
+    @MockitoBean
+    private OrderSearchIndex orderSearchIndex;
+
+    @Test
+    void parallelOrdersNeverOversell() throws Exception {
+        Long productId = saveProduct(100);
+        User user = saveUser();
+
+        AtomicInteger created = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            tasks.add(() -> {
+                try {
+                    orderService.createOrder(request(productId, 1), user);
+                    created.incrementAndGet();
+                } catch (InsufficientStockException e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            });
+        }
+        runTogether(tasks);
+
+        assertEquals(100, created.get());
+        assertEquals(200, rejected.get());
+        assertEquals(0, stock(productId));
+    }
+
+    @Test
+    void cancelAndReopenKeepStockConsistent() throws Exception {
+        Long productId = saveProduct(100);
+        User user = saveUser();
+        List<Long> orderIds = new ArrayList<>();
+        List<Long> placedIds = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            orderIds.add(orderService.createOrder(request(productId, 5), user).getId());
+        }
+        assertEquals(0, stock(productId));
+
+        // Hủy rồi mở lại từng đơn, đồng thời các đơn mới tranh phần hàng vừa được trả về
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Long orderId : orderIds) {
+            tasks.add(() -> {
+                orderService.updateOrderStatus(orderId, OrderStatus.CANCELLED);
+                try {
+                    orderService.updateOrderStatus(orderId, OrderStatus.CONFIRMED);
+                } catch (InsufficientStockException e) {
+                    // Hàng đã bị đơn mới lấy mất: đơn vẫn ở trạng thái hủy
+                }
+                return null;
+            });
+        }
+        for (int i = 0; i < 40; i++) {
+            tasks.add(() -> {
+                try {
+                    placedIds.add(orderService.createOrder(request(productId, 5), user).getId());
+                } catch (InsufficientStockException e) {
+                    // Hết hàng
+                }
+                return null;
+            });
+        }
+        runTogether(tasks);
+
+        int held = 0;
+        placedIds.addAll(orderIds);
+        for (Order order : orderRepository.findAllById(placedIds)) {
+            if (order.getStatus() != OrderStatus.CANCELLED) {
+                held += 5;
+            }
+        }
+        assertEquals(100, held + stock(productId));
+        assertEquals(0, stock(productId));
+    }
+
+    @Test
+    void createOrderReturnsCurrentStock() {
+        Long productId = saveProduct(10);
+        Order order = orderService.createOrder(request(productId, 3), saveUser());
+
+        // Sản phẩm của đơn được nạp trước khi trừ kho, không được giữ số lượng cũ
+        assertEquals(7, order.getItems().get(0).getProduct().getQuantity());
+        assertEquals(7, stock(productId));
+    }
+
+    private Long saveProduct(int quantity) {
+        Product product = new Product();
+        product.setName("Xe đạp gấp");
+        product.setPrice(3_000_000.0);
+        product.setQuantity(quantity);
+        return productRepository.save(product).getId();
+    }
+
+    private User saveUser() {
+        User user = new User();
+        user.setUsername("khach-" + UUID.randomUUID());
+        return userRepository.save(user);
+    }
+
+    private int stock(Long productId) {
+        return productRepository.findById(productId).orElseThrow().getQuantity();
+    }
+
+    private static CreateOrderRequest request(Long productId, int quantity) {
+        CreateOrderRequest.ItemRequest item = new CreateOrderRequest.ItemRequest();
+        item.setProductId(productId);
+        item.setQuantity(quantity);
+        ShippingInfoRequest shippingInfo = new ShippingInfoRequest();
+        shippingInfo.setReceiverName("Nguyễn Văn A");
+        shippingInfo.setPhone("0901234567");
+        shippingInfo.setProvince("Hà Nội");
+        shippingInfo.setDistrict("Cầu Giấy");
+        shippingInfo.setAddress("1 Trần Duy Hưng");
+        CreateOrderRequest request = new CreateOrderRequest();
+        request.setCustomerName("Nguyễn Văn A");
+        request.setItems(List.of(item));
+        request.setShippingInfo(shippingInfo);
+        return request;
+    }
+
+    private static void runTogether(List<Callable<Void>> tasks) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(50);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (Callable<Void> task : tasks) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
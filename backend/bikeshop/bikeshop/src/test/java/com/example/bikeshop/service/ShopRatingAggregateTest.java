@@ -0,0 +1,35 @@
+package com.example.bikeshop.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ShopRatingAggregateTest {
+
+    @Test
+    void editingRatingMovesCountBetweenBuckets() {
+        ShopRatingAggregate aggregate = new ShopRatingAggregate();
+        aggregate.onCreated(3);
+        aggregate.onCreated(5);
+
+        aggregate.onUpdated(3, 4);
+
+        assertEquals(0L, aggregate.starCounts().get(3));
+        assertEquals(1L, aggregate.starCounts().get(4));
+        assertEquals(1L, aggregate.starCounts().get(5));
+        assertEquals(2L, aggregate.total());
+        assertEquals(4.5, aggregate.average(), 1e-9);
+    }
+
+    @Test
+    void deletingLastReviewResetsAverage() {
+        ShopRatingAggregate aggregate = new ShopRatingAggregate();
+        aggregate.onCreated(2);
+
+        aggregate.onDeleted(2);
+
+        assertEquals(0L, aggregate.total());
+        assertEquals(0L, aggregate.starCounts().get(2));
+        assertEquals(0.0, aggregate.average());
+    }
+}
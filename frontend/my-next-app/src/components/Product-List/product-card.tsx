@@ -7,7 +7,7 @@ import { Heart, ShoppingCart } from "lucide-react"
 import { useToast } from "@/hooks/use-toast"
 import { useCart } from "@/context/CartContext"
 import { Button } from "@/components/ui/button"
-import { cn } from "@/lib/utils"
+import { cn, productImage } from "@/lib/utils"
 import { Product } from "@/types/product"
 import { useUser } from "@/hooks/useUser"
 import { useRouter } from "next/navigation"
@@ -127,9 +127,10 @@ export function ProductCard({ product }: ProductCardProps) {
         >
             <div className="relative aspect-square overflow-hidden">
                 <Image
-                    src={product?.imageUrls?.[0] || "/placeholder.svg"}
+                    src={productImage(product, "card") || "/placeholder.svg"}
                     alt={product?.name || "Product image"}
                     fill
+                    unoptimized
                     className="object-cover transition-transform duration-500 group-hover:scale-110"
                 />
 
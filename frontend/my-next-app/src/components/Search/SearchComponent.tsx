@@ -6,6 +6,7 @@ import { useState, useEffect, useRef } from "react"
 import { Search, X } from "lucide-react"
 import Image from "next/image"
 import { Product } from "@/types/product"
+import { productImage } from "@/lib/utils"
 import axios from "axios"
 import { useRouter } from "next/navigation"
 
@@ -137,10 +138,11 @@ export default function SearchComponent() {
                                         >
                                             <div className="flex-shrink-0 w-24 h-24 bg-gray-100 overflow-hidden rounded-md">
                                                 <Image
-                                                    src={product.imageUrls && product.imageUrls.length > 0 ? product.imageUrls[0] : "/placeholder.svg"}
+                                                    src={productImage(product, "thumb") || "/placeholder.svg"}
                                                     alt={product.name}
                                                     width={96}
                                                     height={96}
+                                                    unoptimized
                                                     className="w-full h-full object-cover"
                                                 />
                                             </div>
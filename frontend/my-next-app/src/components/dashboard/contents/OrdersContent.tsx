@@ -5,7 +5,7 @@ import { motion } from "framer-motion"
 import { Package, Plus, Search, Filter, Eye, Edit, Trash2 } from "lucide-react"
 import { Button } from "@/components/ui/button"
 import { Input } from "@/components/ui/input"
-import { Order, PageResponse } from "@/types/order"
+import { OrderSummary, PageResponse } from "@/types/order"
 import {
   Table,
   TableBody,
@@ -46,7 +46,7 @@ import {
 } from "@/components/ui/select"
 
 export default function OrdersContent() {
-  const [orders, setOrders] = useState<Order[]>([])
+  const [orders, setOrders] = useState<OrderSummary[]>([])
   const [currentPage, setCurrentPage] = useState(0)
   const [totalPages, setTotalPages] = useState(0)
   const [pageSize] = useState(5)
@@ -65,7 +65,7 @@ export default function OrdersContent() {
       const response = await fetch(
         `http://localhost:8081/api/orders?page=${page}&size=${pageSize}&sortBy=createdAt&sortDir=desc`
       )
-      const data: PageResponse<Order> = await response.json()
+      const data: PageResponse<OrderSummary> = await response.json()
       setOrders(data.content)
       setTotalPages(data.totalPages)
     } catch (error) {
@@ -75,11 +75,13 @@ export default function OrdersContent() {
     }
   }
 
-  const searchOrders = async () => {
+  const searchOrders = async (page: number) => {
     try {
       setIsLoading(true)
       let url = `http://localhost:8081/api/orders/search?`
       const params = new URLSearchParams()
+      params.append('page', String(page))
+      params.append('size', String(pageSize))
 
       if (searchKeyword) {
         params.append('keyword', searchKeyword)
@@ -89,16 +91,14 @@ export default function OrdersContent() {
       }
 
       // Only make the search request if we have search parameters
-      if (params.toString()) {
+      if (searchKeyword || (selectedStatus && selectedStatus !== 'ALL')) {
         url += params.toString()
         const response = await fetch(url)
-        const data: Order[] = await response.json()
+        const data: PageResponse<OrderSummary> = await response.json()
 
-        // Even if we get a 500 status, if we have data, we'll use it
-        if (data && Array.isArray(data)) {
-          setOrders(data)
-          setTotalPages(Math.ceil(data.length / pageSize))
-          setCurrentPage(0)
+        if (data && Array.isArray(data.content)) {
+          setOrders(data.content)
+          setTotalPages(data.totalPages)
         } else {
           throw new Error('Invalid response format')
         }
@@ -125,7 +125,7 @@ export default function OrdersContent() {
     // Add debounce to prevent too many API calls
     const timeoutId = setTimeout(() => {
       if (searchKeyword || (selectedStatus && selectedStatus !== 'ALL')) {
-        searchOrders()
+        searchOrders(currentPage)
       } else {
         fetchOrders(currentPage)
       }
@@ -228,10 +228,10 @@ export default function OrdersContent() {
             placeholder="Tìm kiếm đơn hàng..."
             className="pl-10 border-gray-200 focus:border-pink-300 focus:ring-pink-200"
             value={searchKeyword}
-            onChange={(e) => setSearchKeyword(e.target.value)}
+            onChange={(e) => { setSearchKeyword(e.target.value); setCurrentPage(0) }}
           />
         </div>
-        <Select value={selectedStatus} onValueChange={setSelectedStatus}>
+        <Select value={selectedStatus} onValueChange={(value) => { setSelectedStatus(value); setCurrentPage(0) }}>
           <SelectTrigger className="w-[180px]">
             <SelectValue placeholder="Trạng thái" />
           </SelectTrigger>
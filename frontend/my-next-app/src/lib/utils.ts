@@ -14,3 +14,13 @@ export function formatCurrency(amount: number): string {
   }).format(amount)
 }
 
+
+// Ảnh thu nhỏ do backend tạo (thumb/card/zoom); sản phẩm chưa có variant thì dùng ảnh gốc
+export function productImage(
+  product: { imageUrls?: string[]; imageVariants?: { thumb: string; card: string; zoom: string }[] } | undefined,
+  size: "thumb" | "card" | "zoom",
+  index = 0,
+): string | undefined {
+  const variant = product?.imageVariants?.[index]?.[size]
+  return variant ? `http://localhost:8081${variant}` : product?.imageUrls?.[index]
+}
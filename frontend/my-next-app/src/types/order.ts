@@ -50,6 +50,16 @@ export interface Order {
   totalPrice: number;
 }
 
+// Row of the admin order table (GET /api/orders, /api/orders/search)
+export interface OrderSummary {
+  id: number;
+  customerName: string;
+  status: string;
+  totalPrice: number;
+  createdAt: string;
+  itemCount: number;
+}
+
 export interface PageResponse<T> {
   content: T[];
   pageable: {
@@ -1,11 +1,19 @@
 import { ProductAttribute } from "./product-attribute";
 
+export interface ImageVariants {
+  original: string;
+  thumb: string;
+  card: string;
+  zoom: string;
+}
+
 export interface Product {
   id: number;
   name: string;
   description: string;
   price: number;
   imageUrls: string[];
+  imageVariants?: ImageVariants[];
   category: string;
   color: string[];
   quantity: number;